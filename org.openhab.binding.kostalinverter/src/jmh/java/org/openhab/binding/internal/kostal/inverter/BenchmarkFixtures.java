@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The {@link BenchmarkFixtures} provides the device responses the benchmarks work on. They are kept in the folder
+ * fixtures of the benchmark resources and have the layout of the responses of the respective inverter generation.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public final class BenchmarkFixtures {
+
+    // First generation: status page of a PIKO 5.5
+    public static final String FIRST_GENERATION_PAGE = "firstgeneration-piko.html";
+    // Second generation: dxs.json answer with all dxsIds of the bundled catalogue
+    public static final String SECOND_GENERATION_DXS = "secondgeneration-dxs.json";
+    // Third generation: processdata answer with all process data of a PLENTICORE plus with battery
+    public static final String THIRD_GENERATION_PROCESSDATA = "thirdgeneration-processdata.json";
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @param name file name of the fixture
+     * @return the content of the fixture
+     * @throws IOException if the fixture does not exist
+     */
+    public static byte[] read(String name) throws IOException {
+        try (InputStream inputStream = BenchmarkFixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (inputStream == null) {
+                throw new FileNotFoundException("Fixture not found: " + name);
+            }
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) > 0) {
+                content.write(buffer, 0, length);
+            }
+            return content.toByteArray();
+        }
+    }
+}
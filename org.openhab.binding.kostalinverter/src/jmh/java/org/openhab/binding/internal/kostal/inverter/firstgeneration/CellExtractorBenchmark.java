@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.firstgeneration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.internal.kostal.inverter.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@link CellExtractorBenchmark} measures how long the {@link CellExtractor}s take to collect the cells of the
+ * status page of a first generation inverter, as done on every refresh of the {@link WebscrapeHandler}.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellExtractorBenchmark {
+
+    @Param({ "streaming", "jsoup" })
+    public String parser;
+
+    private String page;
+    private CellExtractor extractor;
+
+    // Reused like the cells of the handler
+    private final List<String> cells = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        page = new String(BenchmarkFixtures.read(BenchmarkFixtures.FIRST_GENERATION_PAGE),
+                StandardCharsets.ISO_8859_1);
+        extractor = CellExtractor.forName(parser);
+        checkExtractorsAgree();
+    }
+
+    // Both extractors have to deliver the same cells, otherwise the channels would differ with the parser setting
+    private void checkExtractorsAgree() {
+        List<String> streamingCells = new ArrayList<>();
+        new StreamingCellExtractor().extract(page, "td", streamingCells);
+        List<String> jsoupCells = new ArrayList<>();
+        new JsoupCellExtractor().extract(page, "td", jsoupCells);
+        if (!streamingCells.equals(jsoupCells)) {
+            throw new IllegalStateException(
+                    "Extractors differ on " + BenchmarkFixtures.FIRST_GENERATION_PAGE + ", streaming: "
+                            + streamingCells + ", jsoup: " + jsoupCells);
+        }
+    }
+
+    @Benchmark
+    public List<String> extractCells() {
+        extractor.extract(page, "td", cells);
+        return cells;
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.openhab.binding.internal.kostal.inverter.secondgeneration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.types.State;
+import org.openhab.binding.internal.kostal.inverter.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The {@link SecondGenerationDecodeBenchmark} measures the decoding of a dxs.json answer into the states of the
+ * channels, as done for every response in the {@link SecondGenerationHandler}, and the decoding of a single value.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecondGenerationDecodeBenchmark {
+
+    private byte[] response;
+    private SecondGenerationChannelIndex channelIndex;
+    private SecondGenerationChannelIndex.Entry gridOutputPower;
+
+    @Setup
+    public void setUp() throws IOException {
+        response = BenchmarkFixtures.read(BenchmarkFixtures.SECOND_GENERATION_DXS);
+        channelIndex = new SecondGenerationChannelIndex(SecondGenerationDxsCatalogue.get(null));
+        gridOutputPower = channelIndex.get(67109120);
+    }
+
+    @Benchmark
+    public void readResponse(Blackhole blackhole) throws IOException {
+        SecondGenerationDxsEntriesReader.read(new ByteArrayInputStream(response), channelIndex,
+                (entry, state) -> blackhole.consume(state));
+    }
+
+    @Benchmark
+    public State decodeValue() {
+        return gridOutputPower.decode("1834.25");
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.simulator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.openhab.binding.internal.kostal.inverter.BenchmarkFixtures;
+
+/**
+ * The {@link FirstGenerationInverter} serves the status page of a PIKO inverter of the first generation. The page is
+ * protected by basic authentication like the web interface of the device.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+final class FirstGenerationInverter extends SimulatedInverter {
+
+    private final byte[] page;
+    private final String authorization;
+
+    FirstGenerationInverter(int index, InverterSimulatorConfiguration configuration) throws IOException {
+        super(index, configuration);
+        this.page = BenchmarkFixtures.read(BenchmarkFixtures.FIRST_GENERATION_PAGE);
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString(
+                (configuration.username + ":" + configuration.password).getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Override
+    Response handle(Request request) {
+        if (!"GET".equals(request.method)) {
+            return Response.status(405);
+        }
+        if (!"/".equals(request.path) && !"/index.fhtml".equals(request.path)) {
+            return Response.status(404);
+        }
+        if (!authorization.equals(request.headers.getFirst("Authorization"))) {
+            return Response.status(401);
+        }
+        return Response.html(page);
+    }
+
+    @Override
+    boolean isDataRequest(Request request) {
+        return true;
+    }
+}
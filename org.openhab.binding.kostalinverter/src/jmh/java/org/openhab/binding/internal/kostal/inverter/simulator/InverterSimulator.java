@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The {@link InverterSimulator} serves a fleet of virtual inverters of one generation on the loopback interface, so
+ * that the protocol handling of the binding can be load and soak tested without hardware. Each inverter is served
+ * below its own path, see {@link #getUrl(int)} and {@link #getHost(int)} for the values of the thing configuration.
+ *
+ * The answers are delayed by the configured latency and jitter without blocking a thread, and requests can be
+ * rejected with 401 Unauthorized and 503 Service Unavailable at a configured rate.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public final class InverterSimulator implements Closeable {
+
+    public enum Generation {
+        FIRST,
+        SECOND,
+        THIRD
+    }
+
+    // Upper bound for a request body, the binding never sends more than a few kilobytes
+    private static final int MAX_REQUEST_LENGTH = 1024 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(InverterSimulator.class);
+
+    private final InverterSimulatorConfiguration configuration;
+    private final List<SimulatedInverter> inverters = new ArrayList<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    private HttpServer server;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructor of this class, the virtual inverters are created but not served yet
+     *
+     * @param configuration settings of the simulator
+     * @throws IOException if a fixture can not be read
+     */
+    public InverterSimulator(InverterSimulatorConfiguration configuration) throws IOException {
+        if (configuration.inverters < 1 || configuration.threads < 1) {
+            throw new IllegalArgumentException("At least one inverter and one thread are required");
+        }
+        this.configuration = configuration;
+        for (int i = 0; i < configuration.inverters; i++) {
+            inverters.add(createInverter(i));
+        }
+    }
+
+    /**
+     * Starts serving the virtual inverters
+     *
+     * @throws IOException if the server can not be bound to the port
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(configuration.threads, runnable -> {
+            Thread thread = new Thread(runnable, "kostal-simulator-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), configuration.port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        logger.debug("Serving {} inverters of the {} generation on port {}", inverters.size(),
+                configuration.generation, getPort());
+    }
+
+    /**
+     * Stops serving the virtual inverters, requests in progress are dropped
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return the port of the started simulator
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("The simulator has not been started");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of virtual inverters
+     */
+    public int getInverters() {
+        return inverters.size();
+    }
+
+    /**
+     * Returns the url of a virtual inverter as configured for the first and second generation, e.g.
+     * http://127.0.0.1:49152/0
+     *
+     * @param inverter number of the inverter, starting with 0
+     * @return the url of the inverter
+     */
+    public String getUrl(int inverter) {
+        return "http://" + getHost(inverter);
+    }
+
+    /**
+     * Returns the address of a virtual inverter as configured for the third generation, e.g. 127.0.0.1:49152/0
+     *
+     * @param inverter number of the inverter, starting with 0
+     * @return the address of the inverter
+     */
+    public String getHost(int inverter) {
+        if (inverter < 0 || inverter >= inverters.size()) {
+            throw new IndexOutOfBoundsException("No inverter " + inverter);
+        }
+        return InetAddress.getLoopbackAddress().getHostAddress() + ":" + getPort() + "/" + inverter;
+    }
+
+    /**
+     * @return the number of requests received since the start
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of requests which have been answered with an injected error
+     */
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    private SimulatedInverter createInverter(int index) throws IOException {
+        switch (configuration.generation) {
+            case FIRST:
+                return new FirstGenerationInverter(index, configuration);
+            case SECOND:
+                return new SecondGenerationInverter(index, configuration);
+            default:
+                try {
+                    return new ThirdGenerationInverter(index, configuration);
+                } catch (GeneralSecurityException e) {
+                    // PBKDF2 and HMAC SHA256 are supported by every java installation
+                    throw new IllegalStateException(e);
+                }
+        }
+    }
+
+    private void handle(HttpExchange exchange) {
+        requests.incrementAndGet();
+        SimulatedInverter.Response response;
+        try {
+            response = respond(exchange);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Error answering {}", exchange.getRequestURI(), e);
+            response = SimulatedInverter.Response.status(500);
+        }
+
+        long delay = configuration.latencyMillis;
+        if (configuration.jitterMillis > 0) {
+            delay += ThreadLocalRandom.current().nextLong(configuration.jitterMillis + 1);
+        }
+        SimulatedInverter.Response answer = response;
+        if (delay > 0) {
+            executor.schedule(() -> send(exchange, answer), delay, TimeUnit.MILLISECONDS);
+        } else {
+            send(exchange, answer);
+        }
+    }
+
+    private SimulatedInverter.Response respond(HttpExchange exchange) throws IOException {
+        byte[] body = readBody(exchange.getRequestBody());
+        // The third generation sends a double slash between the address and the web API
+        String path = exchange.getRequestURI().getRawPath().replaceAll("/{2,}", "/");
+        int separator = path.indexOf('/', 1);
+        String inverterPath = separator < 0 ? path.substring(1) : path.substring(1, separator);
+        int index;
+        try {
+            index = Integer.parseInt(inverterPath);
+        } catch (NumberFormatException e) {
+            return SimulatedInverter.Response.status(404);
+        }
+        if (index < 0 || index >= inverters.size()) {
+            return SimulatedInverter.Response.status(404);
+        }
+        SimulatedInverter inverter = inverters.get(index);
+        SimulatedInverter.Request request = new SimulatedInverter.Request(exchange.getRequestMethod(),
+                separator < 0 ? "/" : path.substring(separator), exchange.getRequestURI().getRawQuery(),
+                exchange.getRequestHeaders(), body);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (configuration.unavailableRate > 0 && random.nextDouble() < configuration.unavailableRate) {
+            injectedErrors.incrementAndGet();
+            return SimulatedInverter.Response.status(503);
+        }
+        if (configuration.unauthorizedRate > 0 && inverter.isDataRequest(request)
+                && random.nextDouble() < configuration.unauthorizedRate) {
+            injectedErrors.incrementAndGet();
+            inverter.rejectSession(request);
+            return SimulatedInverter.Response.status(401);
+        }
+        return inverter.handle(request);
+    }
+
+    private void send(HttpExchange exchange, SimulatedInverter.Response response) {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            exchange.sendResponseHeaders(response.status, response.body.length == 0 ? -1 : response.body.length);
+            if (response.body.length > 0) {
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(response.body);
+                }
+            }
+        } catch (IOException e) {
+            // The client has gone, e.g. after a timeout
+            logger.debug("Error sending the answer to {}", exchange.getRequestURI(), e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] readBody(InputStream inputStream) throws IOException {
+        try (InputStream body = inputStream) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = body.read(buffer)) > 0) {
+                if (content.size() + length > MAX_REQUEST_LENGTH) {
+                    throw new IOException("Request too large");
+                }
+                content.write(buffer, 0, length);
+            }
+            return content.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.simulator;
+
+/**
+ * The {@link InverterSimulatorConfiguration} class contains the settings of an {@link InverterSimulator}.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class InverterSimulatorConfiguration {
+
+    // Protocol generation of all simulated inverters
+    public InverterSimulator.Generation generation = InverterSimulator.Generation.THIRD;
+
+    // Number of virtual inverters, each one is served below its own path
+    public int inverters = 1;
+
+    // Port of the embedded server, 0 selects a free port
+    public int port;
+
+    // Minimum time to answer a request
+    public long latencyMillis;
+
+    // Random additional time to answer a request, up to this value
+    public long jitterMillis;
+
+    // Share of the requests which are answered with 401 Unauthorized, a third generation session is dropped with it
+    public double unauthorizedRate;
+
+    // Share of the requests which are answered with 503 Service Unavailable
+    public double unavailableRate;
+
+    // Relative amplitude of the variation of the values of the second and third generation, 0 answers the values of
+    // the fixtures unchanged
+    public double valueVariation;
+
+    // Credentials of the web interface, the third generation only checks the password of the user "user"
+    public String username = "pvserver";
+    public String password = "pvwr";
+
+    // PBKDF2 rounds announced by third generation inverters
+    public int rounds = 29000;
+
+    // Threads which answer the requests, the latency does not block them
+    public int threads = 4;
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.simulator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openhab.binding.internal.kostal.inverter.BenchmarkFixtures;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * The {@link SecondGenerationInverter} serves the dxs.json and login.json resources of a PIKO inverter of the
+ * second generation. Values can be read without a session, writing them requires a login.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+final class SecondGenerationInverter extends SimulatedInverter {
+
+    private static final String DXS_PATH = "/api/dxs.json";
+    private static final String LOGIN_PATH = "/api/login.json";
+    private static final String SALT_CHARACTERS = "ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnpqrstuvwxyz23456789";
+
+    private final String username;
+    private final String password;
+
+    // Current values by dxsId, written values replace the ones of the fixture
+    private final Map<Integer, JsonPrimitive> values = new ConcurrentHashMap<>();
+    // Salts of the sessions which have been requested but not logged in yet
+    private final Map<Integer, String> pendingSessions = new ConcurrentHashMap<>();
+    private final Set<Integer> sessions = ConcurrentHashMap.newKeySet();
+
+    SecondGenerationInverter(int index, InverterSimulatorConfiguration configuration) throws IOException {
+        super(index, configuration);
+        this.username = configuration.username;
+        this.password = configuration.password;
+        String fixture = new String(BenchmarkFixtures.read(BenchmarkFixtures.SECOND_GENERATION_DXS),
+                StandardCharsets.UTF_8);
+        for (JsonElement entry : new JsonParser().parse(fixture).getAsJsonObject().getAsJsonArray("dxsEntries")) {
+            JsonObject dxsEntry = entry.getAsJsonObject();
+            values.put(dxsEntry.get("dxsId").getAsInt(), dxsEntry.get("value").getAsJsonPrimitive());
+        }
+    }
+
+    @Override
+    Response handle(Request request) {
+        if (DXS_PATH.equals(request.path)) {
+            return "POST".equals(request.method) ? write(request) : read(request);
+        }
+        if (LOGIN_PATH.equals(request.path)) {
+            return "POST".equals(request.method) ? login(request) : createSession();
+        }
+        return Response.status(404);
+    }
+
+    @Override
+    boolean isDataRequest(Request request) {
+        return DXS_PATH.equals(request.path) && "GET".equals(request.method);
+    }
+
+    private Response read(Request request) {
+        JsonArray dxsEntries = new JsonArray();
+        for (String dxsId : request.getParameters("dxsEntries")) {
+            int id;
+            try {
+                id = Integer.parseInt(dxsId.trim());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            JsonPrimitive value = values.get(id);
+            JsonObject dxsEntry = new JsonObject();
+            dxsEntry.addProperty("dxsId", id);
+            if (value == null) {
+                dxsEntry.addProperty("value", 0);
+            } else if (value.isNumber()) {
+                dxsEntry.addProperty("value", vary(value.getAsDouble()));
+            } else {
+                dxsEntry.add("value", value);
+            }
+            dxsEntries.add(dxsEntry);
+        }
+        JsonObject answer = new JsonObject();
+        answer.add("dxsEntries", dxsEntries);
+        answer.add("session", getSession(0, 0));
+        answer.add("status", getStatus(0));
+        return Response.json(answer.toString());
+    }
+
+    private Response write(Request request) {
+        if (!sessions.contains(getSessionId(request))) {
+            return Response.status(401);
+        }
+        JsonArray dxsEntries;
+        try {
+            dxsEntries = new JsonParser().parse(request.getBodyAsString()).getAsJsonObject()
+                    .getAsJsonArray("dxsEntries");
+        } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+            return Response.status(400);
+        }
+        for (JsonElement entry : dxsEntries) {
+            JsonObject dxsEntry = entry.getAsJsonObject();
+            values.put(dxsEntry.get("dxsId").getAsInt(), dxsEntry.get("value").getAsJsonPrimitive());
+        }
+        // The inverter echoes the entries it has taken over
+        JsonObject answer = new JsonObject();
+        answer.add("dxsEntries", dxsEntries);
+        answer.add("session", getSession(getSessionId(request), 2));
+        answer.add("status", getStatus(0));
+        return Response.json(answer.toString());
+    }
+
+    private Response createSession() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sessionId = random.nextInt(1, Integer.MAX_VALUE);
+        StringBuilder salt = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            salt.append(SALT_CHARACTERS.charAt(random.nextInt(SALT_CHARACTERS.length())));
+        }
+        pendingSessions.put(sessionId, salt.toString());
+        // The binding expects exactly this layout: salt first, then the session and the status without whitespace
+        return Response.json("{\"salt\":\"" + salt + "\",\"session\":{\"sessionId\":" + sessionId
+                + ",\"roleId\":0},\"status\":{\"code\":0}}");
+    }
+
+    private Response login(Request request) {
+        int sessionId = getSessionId(request);
+        String salt = pendingSessions.remove(sessionId);
+        if (salt == null) {
+            return Response.status(401);
+        }
+        JsonObject login;
+        try {
+            login = new JsonParser().parse(request.getBodyAsString()).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            return Response.status(400);
+        }
+        JsonElement userId = login.get("userId");
+        JsonElement pwh = login.get("pwh");
+        if (userId == null || pwh == null || !username.equals(userId.getAsString())
+                || !getPasswordHash(salt).equals(pwh.getAsString())) {
+            return Response.status(403);
+        }
+        sessions.add(sessionId);
+        JsonObject answer = new JsonObject();
+        answer.add("session", getSession(sessionId, 2));
+        answer.add("status", getStatus(0));
+        return Response.json(answer.toString());
+    }
+
+    private String getPasswordHash(String salt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA1");
+            return Base64.getEncoder().encodeToString(digest.digest((password + salt).getBytes()));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA1 is supported by every java installation
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int getSessionId(Request request) {
+        String sessionId = request.getParameter("sessionId");
+        try {
+            return sessionId == null ? 0 : Integer.parseInt(sessionId);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static JsonObject getSession(int sessionId, int roleId) {
+        JsonObject session = new JsonObject();
+        session.addProperty("sessionId", sessionId);
+        session.addProperty("roleId", roleId);
+        return session;
+    }
+
+    private static JsonObject getStatus(int code) {
+        JsonObject status = new JsonObject();
+        status.addProperty("code", code);
+        return status;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.simulator;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.net.httpserver.Headers;
+
+/**
+ * The {@link SimulatedInverter} is the base of the virtual inverters of an {@link InverterSimulator}. It answers the
+ * requests of one inverter, the latency and the injected errors are handled by the simulator.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+abstract class SimulatedInverter {
+
+    /**
+     * A request to a virtual inverter
+     */
+    static final class Request {
+        final String method;
+        // Path below the virtual inverter, starting with /
+        final String path;
+        final Map<String, List<String>> parameters;
+        final Headers headers;
+        final byte[] body;
+
+        Request(String method, String path, String query, Headers headers, byte[] body) {
+            this.method = method;
+            this.path = path;
+            this.parameters = parseQuery(query);
+            this.headers = headers;
+            this.body = body;
+        }
+
+        String getParameter(String name) {
+            List<String> values = parameters.get(name);
+            return values == null ? null : values.get(0);
+        }
+
+        List<String> getParameters(String name) {
+            List<String> values = parameters.get(name);
+            return values == null ? Collections.emptyList() : values;
+        }
+
+        String getBodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        private static Map<String, List<String>> parseQuery(String query) {
+            Map<String, List<String>> parameters = new HashMap<>();
+            if (query == null || query.isEmpty()) {
+                return parameters;
+            }
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+                String name = separator < 0 ? parameter : parameter.substring(0, separator);
+                String value = separator < 0 ? "" : parameter.substring(separator + 1);
+                parameters.computeIfAbsent(decode(name), key -> new ArrayList<>()).add(decode(value));
+            }
+            return parameters;
+        }
+
+        private static String decode(String value) {
+            try {
+                return URLDecoder.decode(value, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                // UTF-8 is always supported
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * The answer of a virtual inverter
+     */
+    static final class Response {
+        final int status;
+        final String contentType;
+        final byte[] body;
+
+        Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response json(String content) {
+            return new Response(200, "application/json", content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Response html(byte[] content) {
+            return new Response(200, "text/html", content);
+        }
+
+        static Response status(int status) {
+            return new Response(status, "text/plain", new byte[0]);
+        }
+    }
+
+    // Period of the variation of numeric values
+    private static final double VARIATION_PERIOD_SECONDS = 60;
+
+    private final long started = System.nanoTime();
+    private final double variation;
+    // Each inverter varies with its own phase, so that the fleet does not change in lockstep
+    private final double phase;
+
+    /**
+     * Constructor of this class
+     *
+     * @param index         number of the inverter within the simulator
+     * @param configuration settings of the simulator
+     */
+    SimulatedInverter(int index, InverterSimulatorConfiguration configuration) {
+        this.variation = configuration.valueVariation;
+        this.phase = index * 0.7;
+    }
+
+    /**
+     * Answers a request
+     *
+     * @param request the request
+     * @return the answer, e.g. 404 if the resource does not exist on this generation
+     */
+    abstract Response handle(Request request);
+
+    /**
+     * @param request the request
+     * @return true if the request reads values and may be rejected with 401 Unauthorized by the error injection
+     */
+    abstract boolean isDataRequest(Request request);
+
+    /**
+     * Called if the error injection rejects a data request with 401 Unauthorized, the inverter forgets the session of
+     * the request, if it has one
+     *
+     * @param request the rejected request
+     */
+    void rejectSession(Request request) {
+    }
+
+    /**
+     * Applies the configured variation to a numeric value
+     *
+     * @param value value of the fixture
+     * @return the value at the current time
+     */
+    double vary(double value) {
+        if (variation == 0) {
+            return value;
+        }
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        return value * (1 + variation * Math.sin(2 * Math.PI * elapsed / VARIATION_PERIOD_SECONDS + phase));
+    }
+}
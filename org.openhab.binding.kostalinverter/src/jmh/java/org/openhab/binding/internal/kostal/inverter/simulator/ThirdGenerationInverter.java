@@ -0,0 +1,314 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.simulator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openhab.binding.internal.kostal.inverter.BenchmarkFixtures;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * The {@link ThirdGenerationInverter} serves the web API of a PIKO IQ / PLENTICORE plus inverter: the SCRAM
+ * authentication with the AES GCM encrypted session token and the processdata resource.
+ *
+ * The salted password is derived once per inverter, as the device keeps the salt of a user, so that the simulator
+ * does not spend the PBKDF2 rounds of the clients on every login.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+final class ThirdGenerationInverter extends SimulatedInverter {
+
+    private static final String WEB_API = "/api/v1";
+    private static final String AUTH_START = WEB_API + "/auth/start";
+    private static final String AUTH_FINISH = WEB_API + "/auth/finish";
+    private static final String AUTH_CREATE_SESSION = WEB_API + "/auth/create_session";
+    private static final String PROCESSDATA = WEB_API + "/processdata";
+
+    private static final String USER_TYPE = "user";
+    private static final String HMAC_SHA256_ALGORITHM = "HmacSHA256";
+    private static final int AES_GCM_TAG_LENGTH = 128;
+
+    /**
+     * State of an authentication between its steps
+     */
+    private static final class Transaction {
+        String authMessage = "";
+        byte[] clientKey = new byte[0];
+        String token = "";
+    }
+
+    private final int rounds;
+    private final String salt;
+    private final byte[] storedKey;
+    private final byte[] serverKey;
+
+    // Values by module id and process data id
+    private final Map<String, Map<String, Double>> processData = new LinkedHashMap<>();
+    private final Map<String, Map<String, String>> units = new LinkedHashMap<>();
+
+    private final Map<String, Transaction> transactions = new ConcurrentHashMap<>();
+    private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+
+    ThirdGenerationInverter(int index, InverterSimulatorConfiguration configuration)
+            throws IOException, GeneralSecurityException {
+        super(index, configuration);
+        this.rounds = configuration.rounds;
+        byte[] saltBytes = new byte[16];
+        ThreadLocalRandom.current().nextBytes(saltBytes);
+        this.salt = Base64.getEncoder().encodeToString(saltBytes);
+
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        byte[] saltedPassword = factory
+                .generateSecret(new PBEKeySpec(configuration.password.toCharArray(), saltBytes, rounds, 256))
+                .getEncoded();
+        this.storedKey = MessageDigest.getInstance("SHA-256").digest(hmac(saltedPassword, "Client Key"));
+        this.serverKey = hmac(saltedPassword, "Server Key");
+
+        String fixture = new String(BenchmarkFixtures.read(BenchmarkFixtures.THIRD_GENERATION_PROCESSDATA),
+                StandardCharsets.UTF_8);
+        for (JsonElement element : new JsonParser().parse(fixture).getAsJsonArray()) {
+            JsonObject module = element.getAsJsonObject();
+            String moduleId = module.get("moduleid").getAsString();
+            Map<String, Double> moduleValues = processData.computeIfAbsent(moduleId, id -> new LinkedHashMap<>());
+            Map<String, String> moduleUnits = units.computeIfAbsent(moduleId, id -> new LinkedHashMap<>());
+            for (JsonElement data : module.getAsJsonArray("processdata")) {
+                JsonObject processdata = data.getAsJsonObject();
+                String id = processdata.get("id").getAsString();
+                moduleValues.put(id, processdata.get("value").getAsDouble());
+                JsonElement unit = processdata.get("unit");
+                moduleUnits.put(id, unit == null ? "" : unit.getAsString());
+            }
+        }
+    }
+
+    @Override
+    Response handle(Request request) {
+        if (!"POST".equals(request.method)) {
+            return Response.status(405);
+        }
+        JsonElement content;
+        try {
+            content = new JsonParser().parse(request.getBodyAsString());
+        } catch (JsonParseException e) {
+            return Response.status(400);
+        }
+        try {
+            switch (request.path) {
+                case AUTH_START:
+                    return startAuthentication(content.getAsJsonObject());
+                case AUTH_FINISH:
+                    return finishAuthentication(content.getAsJsonObject());
+                case AUTH_CREATE_SESSION:
+                    return createSession(content.getAsJsonObject());
+                case PROCESSDATA:
+                    if (!sessions.contains(getSessionId(request))) {
+                        return Response.status(401);
+                    }
+                    return getProcessData(content.getAsJsonArray());
+                default:
+                    return Response.status(404);
+            }
+        } catch (IllegalStateException | NullPointerException | UnsupportedOperationException e) {
+            // Missing or malformed members
+            return Response.status(400);
+        }
+    }
+
+    @Override
+    boolean isDataRequest(Request request) {
+        return PROCESSDATA.equals(request.path);
+    }
+
+    @Override
+    void rejectSession(Request request) {
+        sessions.remove(getSessionId(request));
+    }
+
+    private Response startAuthentication(JsonObject start) {
+        if (!USER_TYPE.equals(start.get("username").getAsString())) {
+            return Response.status(400);
+        }
+        String clientNonce = start.get("nonce").getAsString();
+        String serverNonce = clientNonce + createRandom(12);
+        String transactionId = createRandom(16);
+
+        Transaction transaction = new Transaction();
+        transaction.authMessage = String.format("n=%s,r=%s,r=%s,s=%s,i=%d,c=biws,r=%s", USER_TYPE, clientNonce,
+                serverNonce, salt, rounds, serverNonce);
+        transactions.put(transactionId, transaction);
+
+        JsonObject answer = new JsonObject();
+        answer.addProperty("nonce", serverNonce);
+        answer.addProperty("transactionId", transactionId);
+        answer.addProperty("salt", salt);
+        answer.addProperty("rounds", rounds);
+        return Response.json(answer.toString());
+    }
+
+    private Response finishAuthentication(JsonObject finish) {
+        Transaction transaction = transactions.get(finish.get("transactionId").getAsString());
+        if (transaction == null) {
+            return Response.status(400);
+        }
+        byte[] proof = Base64.getDecoder().decode(finish.get("proof").getAsString());
+        byte[] clientSignature = hmac(storedKey, transaction.authMessage);
+        if (proof.length != clientSignature.length) {
+            return Response.status(400);
+        }
+        // The proof is the client key masked with the client signature
+        byte[] clientKey = new byte[proof.length];
+        for (int i = 0; i < proof.length; i++) {
+            clientKey[i] = (byte) (proof[i] ^ clientSignature[i]);
+        }
+        if (!Arrays.equals(storedKey, sha256(clientKey))) {
+            transactions.remove(finish.get("transactionId").getAsString());
+            return Response.status(400);
+        }
+        transaction.clientKey = clientKey;
+        transaction.token = createRandom(32);
+
+        JsonObject answer = new JsonObject();
+        answer.addProperty("token", transaction.token);
+        answer.addProperty("signature",
+                Base64.getEncoder().encodeToString(hmac(serverKey, transaction.authMessage)));
+        return Response.json(answer.toString());
+    }
+
+    private Response createSession(JsonObject createSession) {
+        Transaction transaction = transactions.remove(createSession.get("transactionId").getAsString());
+        if (transaction == null || transaction.token.isEmpty()) {
+            return Response.status(400);
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] iv = decoder.decode(createSession.get("iv").getAsString());
+        byte[] tag = decoder.decode(createSession.get("tag").getAsString());
+        byte[] payload = decoder.decode(createSession.get("payload").getAsString());
+        byte[] protocolKey = hmac(storedKey, "Session Key".getBytes(), transaction.authMessage.getBytes(),
+                transaction.clientKey);
+
+        byte[] encrypted = new byte[payload.length + tag.length];
+        System.arraycopy(payload, 0, encrypted, 0, payload.length);
+        System.arraycopy(tag, 0, encrypted, payload.length, tag.length);
+        String token;
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(protocolKey, "AES"),
+                    new GCMParameterSpec(AES_GCM_TAG_LENGTH, iv));
+            token = new String(cipher.doFinal(encrypted), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            // Wrong key or manipulated payload
+            return Response.status(400);
+        }
+        if (!transaction.token.equals(token)) {
+            return Response.status(400);
+        }
+        String sessionId = createRandom(24);
+        sessions.add(sessionId);
+
+        JsonObject answer = new JsonObject();
+        answer.addProperty("sessionId", sessionId);
+        return Response.json(answer.toString());
+    }
+
+    private Response getProcessData(JsonArray requestedModules) {
+        JsonArray answer = new JsonArray();
+        for (JsonElement element : requestedModules) {
+            JsonObject requestedModule = element.getAsJsonObject();
+            String moduleId = requestedModule.get("moduleid").getAsString();
+            Map<String, Double> moduleValues = processData.get(moduleId);
+            if (moduleValues == null) {
+                // The device rejects the whole request if a module does not exist
+                return Response.status(404);
+            }
+            Map<String, String> moduleUnits = units.get(moduleId);
+            JsonArray processdata = new JsonArray();
+            for (JsonElement processdataId : requestedModule.getAsJsonArray("processdataids")) {
+                String id = processdataId.getAsString();
+                Double value = moduleValues.get(id);
+                JsonObject data = new JsonObject();
+                data.addProperty("id", id);
+                data.addProperty("unit", moduleUnits.getOrDefault(id, ""));
+                data.addProperty("value", value == null ? 0 : vary(value));
+                processdata.add(data);
+            }
+            JsonObject module = new JsonObject();
+            module.addProperty("moduleid", moduleId);
+            module.add("processdata", processdata);
+            answer.add(module);
+        }
+        return Response.json(answer.toString());
+    }
+
+    private static String getSessionId(Request request) {
+        String authorization = request.headers.getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Session ")) {
+            return "";
+        }
+        return authorization.substring("Session ".length()).trim();
+    }
+
+    private static String createRandom(int length) {
+        byte[] random = new byte[length];
+        ThreadLocalRandom.current().nextBytes(random);
+        return Base64.getEncoder().encodeToString(random);
+    }
+
+    private static byte[] hmac(byte[] key, String value) {
+        return hmac(key, value.getBytes());
+    }
+
+    private static byte[] hmac(byte[] key, byte[]... values) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA256_ALGORITHM);
+            mac.init(new SecretKeySpec(key, HMAC_SHA256_ALGORITHM));
+            for (byte[] value : values) {
+                mac.update(value);
+            }
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            // HMAC SHA256 is supported by every java installation
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] sha256(byte[] value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value);
+        } catch (GeneralSecurityException e) {
+            // SHA-256 is supported by every java installation
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.thirdgeneration;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.internal.kostal.inverter.BenchmarkFixtures;
+import org.openhab.binding.internal.kostal.inverter.RefreshTier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The {@link ThirdGenerationDispatchBenchmark} measures the work of the {@link ThirdGenerationHandler} around a
+ * processdata poll: compiling the request after the linked channels changed, fetching the compiled request and
+ * dispatching the answer of the device to the channels.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThirdGenerationDispatchBenchmark {
+
+    /*
+     * All tiers, as requested by the first poll after the initialization
+     */
+    private static final Set<RefreshTier> ALL_TIERS = EnumSet.allOf(RefreshTier.class);
+
+    /*
+     * Answer of a PLENTICORE plus with battery to a request of all process data
+     */
+    private byte[] answer;
+    private ThirdGenerationProcessDataSubscription subscription;
+    private ThirdGenerationProcessDataRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        answer = BenchmarkFixtures.read(BenchmarkFixtures.THIRD_GENERATION_PROCESSDATA);
+        subscription = new ThirdGenerationProcessDataSubscription(ThirdGenerationMappingInverterToChannel
+                .getModuleToChannelsMappingForInverter(ThirdGenerationInverterTypes.PLENTICORE_PLUS_100_WITH_BATTERY));
+        subscription.setLinked(channelId -> true);
+        request = subscription.getRequest(ALL_TIERS);
+    }
+
+    @Benchmark
+    public byte[] compileRequest() {
+        // Setting the linked channels drops the compiled requests
+        subscription.setLinked(channelId -> true);
+        return subscription.getRequest(ALL_TIERS).getBody();
+    }
+
+    @Benchmark
+    public byte[] cachedRequest() {
+        return subscription.getRequest(ALL_TIERS).getBody();
+    }
+
+    @Benchmark
+    public void readAnswer(Blackhole blackhole) throws IOException {
+        request.readAnswer(answer, (channel, value) -> {
+            blackhole.consume(channel);
+            blackhole.consume(value);
+        });
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.thirdgeneration;
+
+import static org.openhab.binding.internal.kostal.inverter.thirdgeneration.ThirdGenerationBindingConstants.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@link ThirdGenerationEncryptionBenchmark} measures the steps of the authentication of the
+ * {@link ThirdGenerationSessionManager}: the PBKDF2 derivation of the password with and without a cache hit, the
+ * HMAC and SHA256 operations of the handshake and the AES GCM encryption of the session token.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThirdGenerationEncryptionBenchmark {
+
+    /*
+     * Round count sent by the devices
+     */
+    private static final int ROUNDS = 29000;
+    /*
+     * More salts than the cache of the helper holds, so that every derivation misses the cache
+     */
+    private static final int UNCACHED_SALTS = 32;
+    private static final String PASSWORD = "benchmark";
+    private static final String AUTH_MESSAGE = "n=user,r=Jf1qNGgvd5X0mXkdHmpLgA==,r=Jf1qNGgvd5X0mXkdHmpLgAmZr7e2+dIl,"
+            + "s=QWnNStkuxZmbAEqi,i=29000,c=biws,r=Jf1qNGgvd5X0mXkdHmpLgAmZr7e2+dIl";
+    private static final String TOKEN = "1d3a0b7c2e9f48a6b5c4d3e2f1a0b9c8d7e6f5a4b3c2d1e0f9a8b7c6d5e4f3a2";
+
+    private final byte[][] salts = new byte[UNCACHED_SALTS][16];
+    private int nextSalt;
+    private byte[] saltedPassword;
+    private byte[] protocolKey;
+    private final byte[] iv = new byte[16];
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        Random random = new Random(42);
+        for (byte[] salt : salts) {
+            random.nextBytes(salt);
+        }
+        random.nextBytes(iv);
+        saltedPassword = ThirdGenerationEncryptionHelper.getPBKDF2Hash(PASSWORD, salts[0], ROUNDS);
+        byte[] clientKey = ThirdGenerationEncryptionHelper.getHMACSha256(saltedPassword, "Client Key");
+        byte[] storedKey = ThirdGenerationEncryptionHelper.getSha256Hash(clientKey);
+        protocolKey = ThirdGenerationEncryptionHelper.getHMACSha256(storedKey, "Session Key".getBytes(),
+                AUTH_MESSAGE.getBytes(), clientKey);
+    }
+
+    @Benchmark
+    public byte[] pbkdf2Uncached() throws GeneralSecurityException {
+        nextSalt = (nextSalt + 1) % UNCACHED_SALTS;
+        return ThirdGenerationEncryptionHelper.getPBKDF2Hash(PASSWORD, salts[nextSalt], ROUNDS);
+    }
+
+    @Benchmark
+    public byte[] pbkdf2Cached() throws GeneralSecurityException {
+        return ThirdGenerationEncryptionHelper.getPBKDF2Hash(PASSWORD, salts[0], ROUNDS);
+    }
+
+    @Benchmark
+    public String handshake() throws GeneralSecurityException {
+        byte[] clientKey = ThirdGenerationEncryptionHelper.getHMACSha256(saltedPassword, "Client Key");
+        byte[] serverKey = ThirdGenerationEncryptionHelper.getHMACSha256(saltedPassword, "Server Key");
+        byte[] storedKey = ThirdGenerationEncryptionHelper.getSha256Hash(clientKey);
+        byte[] clientSignature = ThirdGenerationEncryptionHelper.getHMACSha256(storedKey, AUTH_MESSAGE);
+        byte[] serverSignature = ThirdGenerationEncryptionHelper.getHMACSha256(serverKey, AUTH_MESSAGE);
+        return ThirdGenerationEncryptionHelper.createClientProof(clientSignature, serverSignature);
+    }
+
+    @Benchmark
+    public byte[] encryptSessionToken() throws GeneralSecurityException {
+        // Same cipher setup as the creation of the session
+        SecretKeySpec skeySpec = new SecretKeySpec(protocolKey, "AES");
+        GCMParameterSpec param = new GCMParameterSpec(protocolKey.length * 8 - AES_GCM_TAG_LENGTH, iv);
+        Cipher cipher = Cipher.getInstance("AES_256/GCM/NOPADDING");
+        cipher.init(Cipher.ENCRYPT_MODE, skeySpec, param);
+        return cipher.doFinal(TOKEN.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.thirdgeneration;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.openhab.binding.internal.kostal.inverter.RefreshTier;
+import org.openhab.binding.internal.kostal.inverter.simulator.InverterSimulator;
+import org.openhab.binding.internal.kostal.inverter.simulator.InverterSimulatorConfiguration;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@link ThirdGenerationFleetBenchmark} polls a fleet of simulated inverters like the
+ * {@link ThirdGenerationHandler} does: each inverter is authenticated by its own {@link ThirdGenerationSessionManager}
+ * and all process data are requested and dispatched over one shared http client. One invocation polls every inverter
+ * once, the sampled times are the latency of a complete refresh of the fleet.
+ *
+ * The inverters are polled through the same {@link ThirdGenerationProcessDataPoll} as in the handler, so rejected
+ * sessions are renewed the same way and a rate of 401 answers measures the cost of the re-authentication. Polls
+ * which still fail are reported as the secondary result {@code failedPolls}.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ThirdGenerationFleetBenchmark {
+
+    @Param({ "10", "100" })
+    public int inverters;
+
+    @Param({ "0", "50" })
+    public long latencyMillis;
+
+    @Param({ "0", "0.01" })
+    public double unauthorizedRate;
+
+    private InverterSimulator simulator;
+    private HttpClient httpClient;
+    private ScheduledExecutorService scheduler;
+    private ThirdGenerationSessionManager[] sessionManagers;
+    private String[] urls;
+    private ThirdGenerationProcessDataRequest request;
+
+    /**
+     * Counts the polls which did not return values, reported by JMH next to the sampled times
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Failures {
+        public long failedPolls;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            failedPolls = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        InverterSimulatorConfiguration configuration = new InverterSimulatorConfiguration();
+        configuration.generation = InverterSimulator.Generation.THIRD;
+        configuration.inverters = inverters;
+        configuration.latencyMillis = latencyMillis;
+        configuration.jitterMillis = latencyMillis / 5;
+        configuration.unauthorizedRate = unauthorizedRate;
+        configuration.valueVariation = 0.1;
+        simulator = new InverterSimulator(configuration);
+        simulator.start();
+
+        httpClient = new HttpClient();
+        httpClient.setMaxConnectionsPerDestination(inverters);
+        httpClient.start();
+        scheduler = Executors.newScheduledThreadPool(2);
+
+        ThirdGenerationProcessDataSubscription subscription = new ThirdGenerationProcessDataSubscription(
+                ThirdGenerationMappingInverterToChannel.getModuleToChannelsMappingForInverter(
+                        ThirdGenerationInverterTypes.PLENTICORE_PLUS_100_WITH_BATTERY));
+        subscription.setLinked(channelId -> true);
+        request = subscription.getRequest(EnumSet.allOf(RefreshTier.class));
+
+        sessionManagers = new ThirdGenerationSessionManager[inverters];
+        urls = new String[inverters];
+        for (int i = 0; i < inverters; i++) {
+            urls[i] = simulator.getHost(i);
+            sessionManagers[i] = new ThirdGenerationSessionManager(httpClient, scheduler, getKey(i), urls[i],
+                    configuration.password, () -> true);
+        }
+        // The logins are not part of the measurement, only renewed sessions are
+        CompletableFuture<?>[] logins = new CompletableFuture<?>[inverters];
+        for (int i = 0; i < inverters; i++) {
+            logins[i] = sessionManagers[i].getSessionId();
+        }
+        CompletableFuture.allOf(logins).join();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        for (int i = 0; i < inverters; i++) {
+            ThirdGenerationSessionManager.forget(getKey(i));
+        }
+        httpClient.stop();
+        scheduler.shutdownNow();
+        simulator.close();
+    }
+
+    @Benchmark
+    public int pollFleet(Failures failures) {
+        AtomicInteger values = new AtomicInteger();
+        AtomicInteger failedPolls = new AtomicInteger();
+        CompletableFuture<?>[] polls = new CompletableFuture<?>[inverters];
+        for (int i = 0; i < inverters; i++) {
+            polls[i] = poll(i, values, failedPolls);
+        }
+        CompletableFuture.allOf(polls).join();
+        failures.failedPolls += failedPolls.get();
+        return values.get();
+    }
+
+    private CompletableFuture<Void> poll(int inverter, AtomicInteger values, AtomicInteger failedPolls) {
+        CompletableFuture<Void> poll = new CompletableFuture<>();
+        ThirdGenerationProcessDataPoll.start(httpClient, urls[inverter], sessionManagers[inverter], request, null, true,
+                new ThirdGenerationProcessDataPoll.Listener() {
+                    @Override
+                    public void authenticationFailed(Throwable failure) {
+                        poll.completeExceptionally(failure);
+                    }
+
+                    @Override
+                    public void requestFailed(Throwable failure) {
+                        poll.completeExceptionally(failure);
+                    }
+
+                    @Override
+                    public void answerReceived(ContentResponse response) {
+                        if (response.getStatus() != 200) {
+                            // Counted like the handler does, as a failed refresh without values
+                            failedPolls.incrementAndGet();
+                            poll.complete(null);
+                            return;
+                        }
+                        try {
+                            request.readAnswer(response.getContent(), (channel, value) -> values.incrementAndGet());
+                            poll.complete(null);
+                        } catch (IOException e) {
+                            poll.completeExceptionally(e);
+                        }
+                    }
+                });
+        return poll;
+    }
+
+    private static String getKey(int inverter) {
+        return "kostalinverter:simulator:" + inverter;
+    }
+}
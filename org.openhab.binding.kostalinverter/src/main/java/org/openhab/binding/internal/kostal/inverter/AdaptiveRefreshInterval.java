@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The {@link AdaptiveRefreshInterval} slows down the refresh of an inverter which does not produce any power, e.g.
+ * at night. Every refresh which finds the inverter idle doubles the refresh interval up to a maximum, as soon as
+ * the inverter produces power again or a command is sent the configured interval applies again.
+ * The handler asks {@link #isDue()} on every tick of its refresh job and skips the ticks in between.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class AdaptiveRefreshInterval {
+
+    // Power below this value (in W) is regarded as no production
+    public static final double IDLE_POWER_THRESHOLD = 1;
+
+    // Operating states reported by idle inverters, in upper case. PIKO inverters report 0 (off) and 1 (idle)
+    private static final Set<String> IDLE_STATES = new HashSet<>(
+            Arrays.asList("0", "1", "AUS", "OFF", "LEERLAUF", "IDLE", "STANDBY"));
+
+    private final long maxFactor;
+
+    // Current multiple of the configured interval and ticks left until the next refresh
+    private long factor = 1;
+    private long remainingTicks;
+
+    /**
+     * Constructor of this class
+     *
+     * @param tickInSeconds            interval of the refresh job
+     * @param maxIntervalInSeconds     longest interval while the inverter is idle, 0 disables the adaption
+     */
+    public AdaptiveRefreshInterval(long tickInSeconds, long maxIntervalInSeconds) {
+        this.maxFactor = Math.max(1, maxIntervalInSeconds / Math.max(1, tickInSeconds));
+    }
+
+    /**
+     * @return true if the adaption is enabled, only then the idle state has to be observed
+     */
+    public boolean isEnabled() {
+        return maxFactor > 1;
+    }
+
+    /**
+     * Called on every tick of the refresh job
+     *
+     * @return true if the inverter has to be refreshed on this tick
+     */
+    public synchronized boolean isDue() {
+        if (remainingTicks > 0) {
+            remainingTicks--;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adapts the interval after a refresh
+     *
+     * @param idle true if the inverter was idle, false if it produced power, null if the refresh did not tell
+     */
+    public synchronized void update(Boolean idle) {
+        if (idle != null) {
+            factor = idle ? Math.min(factor * 2, maxFactor) : 1;
+        }
+        remainingTicks = factor - 1;
+    }
+
+    /**
+     * Returns to the configured interval immediately, e.g. after a command has been sent
+     */
+    public synchronized void reset() {
+        factor = 1;
+        remainingTicks = 0;
+    }
+
+    /**
+     * @return the current multiple of the configured interval
+     */
+    public synchronized long getFactor() {
+        return factor;
+    }
+
+    /**
+     * @param power the current (DC) power in W
+     * @return true if the power tells that the inverter is idle
+     */
+    public static boolean isIdlePower(double power) {
+        return Math.abs(power) < IDLE_POWER_THRESHOLD;
+    }
+
+    /**
+     * @param status the operating state as reported by the inverter
+     * @return true if the state tells that the inverter is idle
+     */
+    public static boolean isIdleStatus(String status) {
+        return IDLE_STATES.contains(status.trim().toUpperCase(Locale.ROOT));
+    }
+}
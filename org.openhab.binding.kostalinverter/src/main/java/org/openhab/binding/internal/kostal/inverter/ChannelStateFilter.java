@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.library.types.QuantityType;
+import org.eclipse.smarthome.core.library.unit.SmartHomeUnits;
+import org.eclipse.smarthome.core.types.State;
+
+/**
+ * The {@link ChannelStateFilter} suppresses channel updates which do not carry new information.
+ * A numeric value is only published if it left the deadband around the last published value, other states only if
+ * they changed. The absolute deadband is given in W and only applies to power values, the inverters report values
+ * of very different magnitude (e.g. V, A and kWh) which one absolute value does not fit. The relative deadband
+ * applies to all numeric values. After the max silence period the state is published in any case, so that items and
+ * persistence see that the channel is still alive.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class ChannelStateFilter {
+
+    private final double absoluteDeadband;
+    private final double relativeDeadband;
+    private final long maxSilenceMillis;
+
+    private final Map<String, PublishedState> publishedStates = new HashMap<>();
+
+    /**
+     * Constructor of this class
+     *
+     * @param absoluteDeadband        changes of power values up to this value in W are suppressed, 0 suppresses only
+     *                                    equal values
+     * @param relativeDeadbandPercent changes up to this percentage of the last published value are suppressed
+     * @param maxSilenceInSeconds     unchanged states are published after this period, 0 disables the filter
+     */
+    public ChannelStateFilter(double absoluteDeadband, double relativeDeadbandPercent, int maxSilenceInSeconds) {
+        this.absoluteDeadband = Math.max(0, absoluteDeadband);
+        this.relativeDeadband = Math.max(0, relativeDeadbandPercent) / 100;
+        this.maxSilenceMillis = TimeUnit.SECONDS.toMillis(Math.max(0, maxSilenceInSeconds));
+    }
+
+    /**
+     * Decides if a new state has to be published and remembers it if so
+     *
+     * @param channelId the channel of the state
+     * @param state     the new state
+     * @return true if the state has to be published
+     */
+    public synchronized boolean filter(String channelId, State state) {
+        long now = System.currentTimeMillis();
+        PublishedState published = publishedStates.get(channelId);
+        if (published == null || maxSilenceMillis == 0 || now - published.timestamp >= maxSilenceMillis
+                || isChanged(published.state, state)) {
+            publishedStates.put(channelId, new PublishedState(state, now));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the last published state of a channel, its next state is published in any case
+     *
+     * @param channelId the channel, e.g. after it has been linked
+     */
+    public synchronized void reset(String channelId) {
+        publishedStates.remove(channelId);
+    }
+
+    /**
+     * Forgets the last published states of all channels
+     */
+    public synchronized void reset() {
+        publishedStates.clear();
+    }
+
+    private boolean isChanged(State last, State state) {
+        if (!(last instanceof Number) || !(state instanceof Number) || last.getClass() != state.getClass()) {
+            return !last.equals(state);
+        }
+        if (last instanceof QuantityType
+                && !((QuantityType<?>) last).getUnit().equals(((QuantityType<?>) state).getUnit())) {
+            return true;
+        }
+        double lastValue = ((Number) last).doubleValue();
+        double difference = Math.abs(((Number) state).doubleValue() - lastValue);
+        if (difference == 0) {
+            return false;
+        }
+        if (difference <= relativeDeadband * Math.abs(lastValue)) {
+            return false;
+        }
+        return absoluteDeadband == 0 || !(last instanceof QuantityType)
+                || getPowerDifference((QuantityType<?>) last, (QuantityType<?>) state) > absoluteDeadband;
+    }
+
+    /**
+     * @return the difference in W, or infinity if the values are not a power, so that they pass the absolute deadband
+     */
+    private static double getPowerDifference(QuantityType<?> last, QuantityType<?> state) {
+        QuantityType<?> lastWatts = last.toUnit(SmartHomeUnits.WATT);
+        QuantityType<?> watts = state.toUnit(SmartHomeUnits.WATT);
+        if (lastWatts == null || watts == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.abs(watts.doubleValue() - lastWatts.doubleValue());
+    }
+
+    private static class PublishedState {
+        private final State state;
+        private final long timestamp;
+
+        PublishedState(State state, long timestamp) {
+            this.state = state;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link CircuitBreaker} stops the refresh of an inverter which cannot be reached.
+ * After {@link #FAILURE_THRESHOLD} failed refreshes in a row the breaker opens and no request is sent until the
+ * backoff period has passed. Then a single trial refresh is allowed (half open), if it fails the breaker opens again
+ * with twice the backoff, if it succeeds the breaker closes. The backoff is randomized, so that inverters which
+ * failed at the same time (e.g. a router restart) do not retry at the same moment.
+ *
+ * Failures are reported once per {@link #REPORT_INTERVAL_MILLIS} while the breaker is open, so that dead inverters
+ * do not flood the log and the event bus.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    // Failed refreshes in a row which open the breaker
+    static final int FAILURE_THRESHOLD = 3;
+
+    static final long MIN_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    static final long REPORT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final long initialBackoffMillis;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long backoffMillis;
+    private long openUntil;
+    private long lastReport;
+
+    /**
+     * Constructor of this class
+     *
+     * @param refreshIntervalInSeconds the refresh interval of the thing, the first backoff is twice this interval
+     */
+    public CircuitBreaker(long refreshIntervalInSeconds) {
+        this.initialBackoffMillis = Math.min(MAX_BACKOFF_MILLIS,
+                Math.max(MIN_BACKOFF_MILLIS, TimeUnit.SECONDS.toMillis(2 * refreshIntervalInSeconds)));
+    }
+
+    /**
+     * Called before a refresh
+     *
+     * @return true if the refresh may send requests
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() >= openUntil) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // The trial refresh has not completed yet
+                return false;
+        }
+    }
+
+    /**
+     * Called after a successful refresh, closes the breaker
+     *
+     * @return true if the breaker was not closed before
+     */
+    public synchronized boolean recordSuccess() {
+        boolean recovered = state != State.CLOSED;
+        state = State.CLOSED;
+        failures = 0;
+        backoffMillis = 0;
+        lastReport = 0;
+        return recovered;
+    }
+
+    /**
+     * Called after a failed refresh
+     *
+     * @return true if the failure should be reported, i.e. by the thing status and the log
+     */
+    public synchronized boolean recordFailure() {
+        long now = System.currentTimeMillis();
+        failures++;
+        if (state == State.HALF_OPEN) {
+            open(now, Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS));
+        } else if (state == State.CLOSED && failures >= FAILURE_THRESHOLD) {
+            open(now, initialBackoffMillis);
+        }
+        if (state == State.CLOSED || now - lastReport >= REPORT_INTERVAL_MILLIS) {
+            lastReport = now;
+            return true;
+        }
+        return false;
+    }
+
+    private void open(long now, long backoff) {
+        state = State.OPEN;
+        backoffMillis = backoff;
+        // Equal jitter: at least half of the backoff, up to the full backoff
+        long half = backoff / 2;
+        openUntil = now + half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the number of failed refreshes in a row
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.io.console.Console;
+import org.eclipse.smarthome.io.console.extensions.AbstractConsoleCommandExtension;
+import org.eclipse.smarthome.io.console.extensions.ConsoleCommandExtension;
+import org.osgi.service.component.annotations.Component;
+
+/**
+ * The {@link KostalInverterConsoleCommandExtension} exports the {@link SampleJournal} of a thing from the console,
+ * e.g. to import the readings into the persistence service after it was not available.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+@Component(service = ConsoleCommandExtension.class)
+public class KostalInverterConsoleCommandExtension extends AbstractConsoleCommandExtension {
+
+    private static final String SUBCMD_EXPORT = "export";
+
+    // Period exported if none is given
+    private static final long DEFAULT_HOURS = 24;
+
+    public KostalInverterConsoleCommandExtension() {
+        super("kostalinverter", "Export the sample journals of the Kostal inverters.");
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length < 3 || args.length > 4 || !SUBCMD_EXPORT.equals(args[0])) {
+            printUsage(console);
+            return;
+        }
+        long hours = DEFAULT_HOURS;
+        if (args.length == 4) {
+            try {
+                hours = Long.parseLong(args[3]);
+            } catch (NumberFormatException e) {
+                printUsage(console);
+                return;
+            }
+        }
+        Path directory = SampleJournal.getDirectory(args[1]);
+        if (!Files.isDirectory(directory)) {
+            console.println("No journal found for " + args[1]);
+            return;
+        }
+        Path file = Paths.get(args[2]);
+        long to = System.currentTimeMillis();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            long records = SampleJournal.export(directory, to - TimeUnit.HOURS.toMillis(hours), to, writer);
+            console.println("Exported " + records + " records to " + file.toAbsolutePath());
+        } catch (IOException e) {
+            console.println("Export failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return Collections.singletonList(buildCommandUsage(SUBCMD_EXPORT + " <thingUID> <file> [<hours>]",
+                "writes the journal of the last hours (default " + DEFAULT_HOURS + ") as CSV to the file"));
+    }
+}
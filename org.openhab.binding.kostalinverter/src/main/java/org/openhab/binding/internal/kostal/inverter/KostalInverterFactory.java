@@ -28,6 +28,7 @@ import org.openhab.binding.internal.kostal.inverter.firstgeneration.WebscrapeHan
 import org.openhab.binding.internal.kostal.inverter.secondgeneration.SecondGenerationHandler;
 import org.openhab.binding.internal.kostal.inverter.thirdgeneration.ThirdGenerationHandler;
 import org.openhab.binding.internal.kostal.inverter.thirdgeneration.ThirdGenerationInverterTypes;
+import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 
@@ -35,6 +36,7 @@ import org.osgi.service.component.annotations.Reference;
  * @author Christian Schneider - Initial contribution (as WebscrapeHandlerFactory.java)
  * @author René Stakemeier - extension for the third generation of KOSTAL inverters
  * @author Örjan Backsell - extension for the second generation of KOSTAL inverters
+ * @author Örjan Backsell - Shared polling coordinator for all generations
  */
 @Component(service = ThingHandlerFactory.class, configurationPid = "binding.kostalinverter")
 public class KostalInverterFactory extends BaseThingHandlerFactory {
@@ -70,6 +72,9 @@ public class KostalInverterFactory extends BaseThingHandlerFactory {
 
     private HttpClient httpClient;
 
+    // Runs the refreshes of all things of this factory, staggered and with limited concurrency
+    private final KostalPollingCoordinator pollingCoordinator = new KostalPollingCoordinator();
+
     public static final ThingTypeUID FIRST_GENERATION_INVERTER = new ThingTypeUID("kostalinverter", "kostalinverter");
 
     public static final ThingTypeUID SECOND_GENERATION_INVERTER = new ThingTypeUID("kostalinverter",
@@ -86,17 +91,17 @@ public class KostalInverterFactory extends BaseThingHandlerFactory {
 
         // first generation
         if (FIRST_GENERATION_INVERTER.equals(thing.getThingTypeUID())) {
-            return new WebscrapeHandler(thing);
+            return new WebscrapeHandler(thing, pollingCoordinator);
         }
 
         // second generation
         if (SECOND_GENERATION_INVERTER.equals(thing.getThingTypeUID())) {
-            return new SecondGenerationHandler(thing);
+            return new SecondGenerationHandler(thing, httpClient, pollingCoordinator);
         }
 
         // third generation
         if (SUPPORTED_THIRD_GENERATION_THING_TYPES_UIDS.containsKey(thing.getThingTypeUID())) {
-            return new ThirdGenerationHandler(thing, httpClient,
+            return new ThirdGenerationHandler(thing, httpClient, pollingCoordinator,
                     SUPPORTED_THIRD_GENERATION_THING_TYPES_UIDS.get(thing.getThingTypeUID()));
         }
 
@@ -107,6 +112,12 @@ public class KostalInverterFactory extends BaseThingHandlerFactory {
     protected void removeHandler(ThingHandler thingHandler) {
     }
 
+    @Override
+    protected void deactivate(ComponentContext componentContext) {
+        pollingCoordinator.dispose();
+        super.deactivate(componentContext);
+    }
+
     @Reference
     protected void setHttpClientFactory(HttpClientFactory httpClientFactory) {
         this.httpClient = httpClientFactory.getCommonHttpClient();
@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link KostalPollingCoordinator} runs the refreshes of all inverters created by one factory.
+ * The first refresh of each thing is shifted by a phase offset, so that inverters with the same interval do not
+ * fire at the same moment. The number of refreshes in flight is limited per host and in total, refreshes which
+ * cannot start right away wait until a running one has completed.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class KostalPollingCoordinator {
+
+    /**
+     * A refresh of one thing, which may complete asynchronously.
+     */
+    @FunctionalInterface
+    public interface PollingTask {
+        /**
+         * Refreshes the thing.
+         *
+         * @param completion has to be run exactly once when all requests of this refresh completed, also if
+         *            nothing was requested or the refresh failed
+         */
+        void poll(Runnable completion);
+    }
+
+    // Name of the shared openHAB thread pool the refreshes run on
+    static final String THREAD_POOL_NAME = "kostalinverter";
+
+    // Inverters answer slowly, more than one request at a time only slows them down
+    static final int MAX_POLLS_PER_HOST = 1;
+    static final int MAX_POLLS = 8;
+
+    // A refresh which did not report its completion within this period frees its slot anyway
+    static final long POLL_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    // Fractional part of the golden ratio, successive phases are spread evenly over the interval
+    private static final double PHASE_STEP = 0.6180339887498949;
+
+    private final Logger logger = LoggerFactory.getLogger(KostalPollingCoordinator.class);
+
+    private final ScheduledExecutorService executor;
+
+    // Guards all fields below
+    private final Object lock = new Object();
+    private final Set<Registration> registered = new HashSet<>();
+    private final Deque<Registration> waiting = new ArrayDeque<>();
+    private final Map<String, Integer> pollsByHost = new HashMap<>();
+    private int polls;
+    private long registrations;
+
+    public KostalPollingCoordinator() {
+        this(ThreadPoolManager.getScheduledPool(THREAD_POOL_NAME));
+    }
+
+    KostalPollingCoordinator(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Starts the periodic refresh of a thing.
+     *
+     * @param url the address of the inverter, refreshes of inverters with the same host are not run in parallel
+     * @param initialDelayInSeconds minimum delay of the first refresh, the phase offset is added
+     * @param intervalInSeconds the interval between the starts of two refreshes
+     * @param task performs the refresh
+     * @return the registration, which has to be cancelled when the handler is disposed
+     */
+    public Registration register(String url, long initialDelayInSeconds, long intervalInSeconds, PollingTask task) {
+        long intervalMillis = TimeUnit.SECONDS.toMillis(Math.max(1, intervalInSeconds));
+        long phase;
+        synchronized (lock) {
+            phase = (long) ((registrations++ * PHASE_STEP) % 1.0 * intervalMillis);
+        }
+        Registration registration = new Registration(getHost(url), intervalMillis, task);
+        synchronized (lock) {
+            registered.add(registration);
+        }
+        registration.schedule(TimeUnit.SECONDS.toMillis(Math.max(0, initialDelayInSeconds)) + phase);
+        return registration;
+    }
+
+    /**
+     * Cancels all refreshes, which are still registered.
+     */
+    public void dispose() {
+        synchronized (lock) {
+            for (Registration registration : new ArrayList<>(registered)) {
+                registration.cancel();
+            }
+        }
+    }
+
+    static String getHost(String url) {
+        try {
+            String host = new URI(url).getHost();
+            if (host != null) {
+                return host.toLowerCase();
+            }
+        } catch (URISyntaxException e) {
+            // Third generation things are configured by their host name only
+        }
+        return url.trim().toLowerCase();
+    }
+
+    private boolean tryStart(Registration registration) {
+        int hostPolls = pollsByHost.getOrDefault(registration.host, 0);
+        if (polls >= MAX_POLLS || hostPolls >= MAX_POLLS_PER_HOST) {
+            return false;
+        }
+        polls++;
+        pollsByHost.put(registration.host, hostPolls + 1);
+        return true;
+    }
+
+    private void release(Registration registration) {
+        polls--;
+        int hostPolls = pollsByHost.getOrDefault(registration.host, 1) - 1;
+        if (hostPolls > 0) {
+            pollsByHost.put(registration.host, hostPolls);
+        } else {
+            pollsByHost.remove(registration.host);
+        }
+    }
+
+    /**
+     * Starts the waiting refreshes which got a free slot, in the order they became due.
+     */
+    private void dispatchWaiting() {
+        synchronized (lock) {
+            Iterator<Registration> iterator = waiting.iterator();
+            while (iterator.hasNext() && polls < MAX_POLLS) {
+                Registration registration = iterator.next();
+                if (tryStart(registration)) {
+                    iterator.remove();
+                    executor.execute(registration::run);
+                }
+            }
+        }
+    }
+
+    /**
+     * The periodic refresh of one thing.
+     */
+    public class Registration {
+        private final String host;
+        private final long intervalMillis;
+        private final PollingTask task;
+
+        // Guarded by the lock of the coordinator
+        private long nextDueMillis;
+        private ScheduledFuture<?> job;
+        private boolean cancelled;
+
+        private Registration(String host, long intervalMillis, PollingTask task) {
+            this.host = host;
+            this.intervalMillis = intervalMillis;
+            this.task = task;
+        }
+
+        /**
+         * Stops the refresh, a refresh in flight is completed.
+         */
+        public void cancel() {
+            synchronized (lock) {
+                cancelled = true;
+                registered.remove(this);
+                waiting.remove(this);
+                if (job != null) {
+                    job.cancel(false);
+                    job = null;
+                }
+            }
+        }
+
+        private void schedule(long delayMillis) {
+            synchronized (lock) {
+                if (cancelled) {
+                    return;
+                }
+                nextDueMillis = System.currentTimeMillis() + delayMillis;
+                job = executor.schedule(this::due, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void due() {
+            synchronized (lock) {
+                if (cancelled) {
+                    return;
+                }
+                if (!tryStart(this)) {
+                    logger.trace("Refresh of {} waits for a free slot", host);
+                    waiting.addLast(this);
+                    return;
+                }
+            }
+            run();
+        }
+
+        private void run() {
+            AtomicBoolean completed = new AtomicBoolean();
+            Runnable completion = () -> {
+                if (completed.compareAndSet(false, true)) {
+                    completed();
+                }
+            };
+            ScheduledFuture<?> timeout = executor.schedule(() -> {
+                if (!completed.get()) {
+                    logger.debug("Refresh of {} did not complete within {} ms", host, POLL_TIMEOUT_MILLIS);
+                }
+                completion.run();
+            }, POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            try {
+                task.poll(() -> {
+                    timeout.cancel(false);
+                    completion.run();
+                });
+            } catch (RuntimeException e) {
+                logger.warn("Refresh of {} failed", host, e);
+                timeout.cancel(false);
+                completion.run();
+            }
+        }
+
+        private void completed() {
+            synchronized (lock) {
+                release(this);
+                if (!cancelled) {
+                    // Keep the phase, intervals missed by a slow refresh are skipped
+                    long now = System.currentTimeMillis();
+                    long next = nextDueMillis + intervalMillis;
+                    if (next < now) {
+                        next += ((now - next) / intervalMillis + 1) * intervalMillis;
+                    }
+                    nextDueMillis = next;
+                    job = executor.schedule(this::due, next - now, TimeUnit.MILLISECONDS);
+                }
+            }
+            dispatchWaiting();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link LogHistogram} counts values in buckets of logarithmic width, like an HDR histogram with one significant
+ * digit in binary: each power of two is split into {@link #SUB_BUCKETS} buckets, so that a percentile is off by at
+ * most 1/16 of its value. The memory is fixed and recording neither locks nor allocates.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+final class LogHistogram {
+
+    // Buckets per power of two
+    static final int SUB_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 4;
+
+    // Larger values are counted in the last bucket, 2^40 nanoseconds are more than 18 minutes
+    private static final int MAX_EXPONENT = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(
+            SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Counts a value, negative values are counted as 0
+     *
+     * @param value the value
+     */
+    void record(long value) {
+        long positive = Math.max(0, value);
+        counts.incrementAndGet(getIndex(positive));
+        count.increment();
+        sum.add(positive);
+        max.accumulate(positive);
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean of the recorded values, 0 if there are none
+     */
+    double getMean() {
+        long values = count.sum();
+        return values == 0 ? 0 : (double) sum.sum() / values;
+    }
+
+    /**
+     * @return the largest recorded value
+     */
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which the given share of the recorded values lies
+     *
+     * @param percentile the share in percent, e.g. 95
+     * @return the upper bound of the bucket holding the percentile, but not more than the largest value, 0 if there
+     *         are no values
+     */
+    long getPercentile(double percentile) {
+        long values = 0;
+        for (int index = 0; index < counts.length(); index++) {
+            values += counts.get(index);
+        }
+        if (values == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(values * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int index = 0; index < counts.length(); index++) {
+            seen += counts.get(index);
+            if (seen >= rank) {
+                // The last bucket holds all larger values as well
+                return index == counts.length() - 1 ? max.get() : Math.min(getUpperBound(index), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Counts the values of another histogram as well
+     *
+     * @param other the histogram whose values are added, it is not changed
+     */
+    void add(LogHistogram other) {
+        for (int index = 0; index < counts.length(); index++) {
+            long values = other.counts.get(index);
+            if (values > 0) {
+                counts.addAndGet(index, values);
+            }
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        max.accumulate(other.max.get());
+    }
+
+    /**
+     * Forgets all values
+     */
+    void reset() {
+        for (int index = 0; index < counts.length(); index++) {
+            counts.set(index, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    static int getIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long getUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width - 1;
+    }
+}
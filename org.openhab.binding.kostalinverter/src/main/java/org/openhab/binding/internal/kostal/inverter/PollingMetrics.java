@@ -0,0 +1,477 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+import java.lang.management.ManagementFactory;
+import java.net.SocketTimeoutException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.measure.quantity.Time;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.QuantityType;
+import org.eclipse.smarthome.core.library.unit.SmartHomeUnits;
+import org.eclipse.smarthome.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link PollingMetrics} record where the time of the polls of a thing goes and how often they fail.
+ * The latencies of the phases of a poll are kept in {@link LogHistogram}s, the handler reports each phase, the
+ * response status and size, the authentications and whether the state filter passed a value on.
+ *
+ * The metrics are shown as diagnostic channels, with the 95th percentile of each phase over the last
+ * {@link #WINDOW_MINUTES} to twice as many minutes, so that a degrading inverter shows up soon, and as a
+ * {@link PollingMetricsMXBean} with the full distributions since the initialization or the last reset.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class PollingMetrics implements PollingMetricsMXBean {
+
+    public enum Phase {
+        // A complete poll, from the first request to the last channel update
+        POLL,
+        // Sending a request until its response has been received
+        REQUEST,
+        // Login or session creation before the request
+        AUTHENTICATION,
+        // Decoding the response, without the channel updates
+        PARSE,
+        // State filter, journal, aggregates and the channel updates
+        UPDATE
+    }
+
+    // Channels with the recent 95th percentile of the latency of a phase
+    public static final String CHANNEL_POLL_LATENCY = "metricsPollLatency";
+    public static final String CHANNEL_REQUEST_LATENCY = "metricsRequestLatency";
+    public static final String CHANNEL_AUTHENTICATION_LATENCY = "metricsAuthenticationLatency";
+    public static final String CHANNEL_PARSE_LATENCY = "metricsParseLatency";
+    public static final String CHANNEL_UPDATE_LATENCY = "metricsUpdateLatency";
+
+    // Channels with the counters since the initialization of the thing
+    public static final String CHANNEL_AUTHENTICATIONS = "metricsAuthentications";
+    public static final String CHANNEL_UNAUTHORIZED = "metricsUnauthorized";
+    public static final String CHANNEL_UNAVAILABLE = "metricsUnavailable";
+    public static final String CHANNEL_TIMEOUTS = "metricsTimeouts";
+    public static final String CHANNEL_ERRORS = "metricsErrors";
+    public static final String CHANNEL_SKIPPED_UPDATES = "metricsSkippedUpdates";
+
+    // Channel with the number of bytes received by the last poll
+    public static final String CHANNEL_BYTES_PER_POLL = "metricsBytesPerPoll";
+
+    static final String JMX_DOMAIN = "org.openhab.binding.kostalinverter";
+
+    private static final double PERCENTILE = 95;
+
+    // The channels show the percentiles of the current and the previous window
+    static final long WINDOW_MINUTES = 15;
+
+    private static final String[] CHANNELS = { CHANNEL_POLL_LATENCY, CHANNEL_REQUEST_LATENCY,
+            CHANNEL_AUTHENTICATION_LATENCY, CHANNEL_PARSE_LATENCY, CHANNEL_UPDATE_LATENCY, CHANNEL_AUTHENTICATIONS,
+            CHANNEL_UNAUTHORIZED, CHANNEL_UNAVAILABLE, CHANNEL_TIMEOUTS, CHANNEL_ERRORS, CHANNEL_SKIPPED_UPDATES,
+            CHANNEL_BYTES_PER_POLL };
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PollingMetrics.class);
+
+    // Registered metrics by thing UID, so that metrics which have been replaced do not unregister their successor
+    private static final Map<String, PollingMetrics> REGISTERED = new ConcurrentHashMap<>();
+
+    private final String thingUID;
+    private final Map<Phase, LogHistogram> latencies = new EnumMap<>(Phase.class);
+    private final Map<Phase, WindowedHistogram> recentLatencies = new EnumMap<>(Phase.class);
+    private final LogHistogram bytesPerPoll = new LogHistogram();
+
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder authentications = new LongAdder();
+    private final LongAdder unauthorized = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder skippedUpdates = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    // Bytes received by the running poll and by the last completed one
+    private final AtomicLong pollBytes = new AtomicLong();
+    private volatile long lastPollBytes;
+
+    // Name of the registered MXBean, null if it is not registered
+    private ObjectName objectName;
+
+    /**
+     * Constructor of this class
+     *
+     * @param thingUID the thing whose polls are recorded
+     */
+    public PollingMetrics(String thingUID) {
+        this.thingUID = thingUID;
+        for (Phase phase : Phase.values()) {
+            latencies.put(phase, new LogHistogram());
+            recentLatencies.put(phase, new WindowedHistogram(TimeUnit.MINUTES.toNanos(WINDOW_MINUTES)));
+        }
+    }
+
+    /**
+     * Creates the metrics of a thing and registers them as MXBean, a failed registration is only logged
+     *
+     * @param thingUID the thing whose polls are recorded
+     * @return the metrics
+     */
+    public static PollingMetrics register(String thingUID) {
+        PollingMetrics metrics = new PollingMetrics(thingUID);
+        REGISTERED.put(thingUID, metrics);
+        try {
+            ObjectName name = new ObjectName(
+                    JMX_DOMAIN + ":type=PollingMetrics,thing=" + ObjectName.quote(thingUID));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                // Left over by a handler which has not been disposed
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+            metrics.objectName = name;
+        } catch (JMException | RuntimeException e) {
+            LOGGER.debug("Could not register the polling metrics of {}", thingUID, e);
+        }
+        return metrics;
+    }
+
+    /**
+     * Removes the MXBean, the metrics can still be recorded
+     */
+    public synchronized void unregister() {
+        ObjectName name = objectName;
+        objectName = null;
+        if (!REGISTERED.remove(thingUID, this) || name == null) {
+            // Replaced by newer metrics of the thing, or never registered as MXBean
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException | RuntimeException e) {
+            LOGGER.debug("Could not unregister the polling metrics of {}", thingUID, e);
+        }
+    }
+
+    /**
+     * Records the duration of a phase which ends now
+     *
+     * @param phase      the phase
+     * @param startNanos the value of {@link System#nanoTime()} when the phase started
+     */
+    public void recordSince(Phase phase, long startNanos) {
+        record(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the duration of a phase
+     *
+     * @param phase the phase
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        latencies.get(phase).record(nanos);
+        recentLatencies.get(phase).record(nanos);
+    }
+
+    /**
+     * Records a completed authentication
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the authentication started
+     */
+    public void recordAuthentication(long startNanos) {
+        authentications.increment();
+        recordSince(Phase.AUTHENTICATION, startNanos);
+    }
+
+    /**
+     * Records the status of a response, 401, 503 and the other error codes are counted
+     *
+     * @param status the http status code
+     */
+    public void recordStatus(int status) {
+        if (status == 401) {
+            unauthorized.increment();
+        } else if (status == 503) {
+            unavailable.increment();
+        } else if (status >= 400) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Records a request which failed without a response, timeouts are counted separately
+     *
+     * @param failure the cause of the failure
+     */
+    public void recordFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof SocketTimeoutException) {
+                timeouts.increment();
+                return;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        errors.increment();
+    }
+
+    /**
+     * Records the size of a response, it is added to the bytes of the running poll
+     *
+     * @param bytes the length of the response body
+     */
+    public void recordResponse(long bytes) {
+        bytesReceived.add(bytes);
+        pollBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Records the decision of the state filter
+     *
+     * @param published true if the value has been passed on to the channel, false if it has been suppressed
+     */
+    public void recordUpdate(boolean published) {
+        if (published) {
+            updates.increment();
+        } else {
+            skippedUpdates.increment();
+        }
+    }
+
+    /**
+     * Records the end of a poll which sent at least one request
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the poll started
+     */
+    public void pollCompleted(long startNanos) {
+        recordSince(Phase.POLL, startNanos);
+        polls.increment();
+        long bytes = pollBytes.getAndSet(0);
+        lastPollBytes = bytes;
+        bytesPerPoll.record(bytes);
+    }
+
+    /**
+     * @param channelId a channel id of the thing
+     * @return true if the channel shows one of the metrics
+     */
+    public static boolean isMetricsChannel(String channelId) {
+        for (String channel : CHANNELS) {
+            if (channel.equals(channelId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes the metrics of the linked channels to the publisher, they are not subject to the state filter
+     *
+     * @param isLinked  tells if the channel with the given id is linked
+     * @param publisher receives the channel id and the state of each linked metric
+     */
+    public void publish(Predicate<String> isLinked, BiConsumer<String, State> publisher) {
+        publishLatency(isLinked, publisher, CHANNEL_POLL_LATENCY, Phase.POLL);
+        publishLatency(isLinked, publisher, CHANNEL_REQUEST_LATENCY, Phase.REQUEST);
+        publishLatency(isLinked, publisher, CHANNEL_AUTHENTICATION_LATENCY, Phase.AUTHENTICATION);
+        publishLatency(isLinked, publisher, CHANNEL_PARSE_LATENCY, Phase.PARSE);
+        publishLatency(isLinked, publisher, CHANNEL_UPDATE_LATENCY, Phase.UPDATE);
+        publishCount(isLinked, publisher, CHANNEL_AUTHENTICATIONS, authentications.sum());
+        publishCount(isLinked, publisher, CHANNEL_UNAUTHORIZED, unauthorized.sum());
+        publishCount(isLinked, publisher, CHANNEL_UNAVAILABLE, unavailable.sum());
+        publishCount(isLinked, publisher, CHANNEL_TIMEOUTS, timeouts.sum());
+        publishCount(isLinked, publisher, CHANNEL_ERRORS, errors.sum());
+        publishCount(isLinked, publisher, CHANNEL_SKIPPED_UPDATES, skippedUpdates.sum());
+        publishCount(isLinked, publisher, CHANNEL_BYTES_PER_POLL, lastPollBytes);
+    }
+
+    private void publishLatency(Predicate<String> isLinked, BiConsumer<String, State> publisher, String channelId,
+            Phase phase) {
+        if (!isLinked.test(channelId)) {
+            return;
+        }
+        LogHistogram histogram = recentLatencies.get(phase).getRecent(System.nanoTime());
+        if (histogram.getCount() > 0) {
+            double seconds = histogram.getPercentile(PERCENTILE) / (double) TimeUnit.SECONDS.toNanos(1);
+            publisher.accept(channelId, new QuantityType<Time>(seconds, SmartHomeUnits.SECOND));
+        }
+    }
+
+    private static void publishCount(Predicate<String> isLinked, BiConsumer<String, State> publisher,
+            String channelId, long count) {
+        if (isLinked.test(channelId)) {
+            publisher.accept(channelId, new DecimalType(count));
+        }
+    }
+
+    @Override
+    public String getThingUID() {
+        return thingUID;
+    }
+
+    @Override
+    public long getPolls() {
+        return polls.sum();
+    }
+
+    @Override
+    public long getAuthentications() {
+        return authentications.sum();
+    }
+
+    @Override
+    public long getUnauthorizedResponses() {
+        return unauthorized.sum();
+    }
+
+    @Override
+    public long getUnavailableResponses() {
+        return unavailable.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    @Override
+    public long getSkippedUpdates() {
+        return skippedUpdates.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public Summary getPollLatencyMillis() {
+        return getLatency(Phase.POLL);
+    }
+
+    @Override
+    public Summary getRequestLatencyMillis() {
+        return getLatency(Phase.REQUEST);
+    }
+
+    @Override
+    public Summary getAuthenticationLatencyMillis() {
+        return getLatency(Phase.AUTHENTICATION);
+    }
+
+    @Override
+    public Summary getParseLatencyMillis() {
+        return getLatency(Phase.PARSE);
+    }
+
+    @Override
+    public Summary getUpdateLatencyMillis() {
+        return getLatency(Phase.UPDATE);
+    }
+
+    @Override
+    public Summary getBytesPerPoll() {
+        return getSummary(bytesPerPoll, 1);
+    }
+
+    @Override
+    public void reset() {
+        for (LogHistogram histogram : latencies.values()) {
+            histogram.reset();
+        }
+        for (WindowedHistogram histogram : recentLatencies.values()) {
+            histogram.reset();
+        }
+        bytesPerPoll.reset();
+        for (LongAdder counter : new LongAdder[] { polls, authentications, unauthorized, unavailable, timeouts,
+                errors, updates, skippedUpdates, bytesReceived }) {
+            counter.reset();
+        }
+    }
+
+    private Summary getLatency(Phase phase) {
+        return getSummary(latencies.get(phase), TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static Summary getSummary(LogHistogram histogram, double divisor) {
+        return new Summary(histogram.getCount(), histogram.getMean() / divisor,
+                histogram.getPercentile(50) / divisor, histogram.getPercentile(90) / divisor,
+                histogram.getPercentile(99) / divisor, histogram.getMax() / divisor);
+    }
+
+    /**
+     * Keeps the values of the current and the previous window, the windows move on as time passes
+     */
+    private static final class WindowedHistogram {
+        private final long windowNanos;
+
+        private volatile LogHistogram current = new LogHistogram();
+        private LogHistogram previous = new LogHistogram();
+        private long windowStart = System.nanoTime();
+
+        WindowedHistogram(long windowNanos) {
+            this.windowNanos = windowNanos;
+        }
+
+        void record(long value) {
+            current.record(value);
+        }
+
+        /**
+         * @param now the value of {@link System#nanoTime()}
+         * @return a copy with the values of the current and the previous window
+         */
+        synchronized LogHistogram getRecent(long now) {
+            long elapsedWindows = (now - windowStart) / windowNanos;
+            if (elapsedWindows > 0) {
+                // Values which arrive while the windows move on may land in the previous one
+                previous = elapsedWindows == 1 ? current : new LogHistogram();
+                current = new LogHistogram();
+                windowStart += elapsedWindows * windowNanos;
+            }
+            LogHistogram recent = new LogHistogram();
+            recent.add(previous);
+            recent.add(current);
+            return recent;
+        }
+
+        synchronized void reset() {
+            previous = new LogHistogram();
+            current = new LogHistogram();
+            windowStart = System.nanoTime();
+        }
+    }
+}
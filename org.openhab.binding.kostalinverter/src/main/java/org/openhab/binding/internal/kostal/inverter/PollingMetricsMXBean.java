@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+/**
+ * The {@link PollingMetricsMXBean} shows the {@link PollingMetrics} of a thing in JMX consoles, e.g. under
+ * org.openhab.binding.kostalinverter:type=PollingMetrics,thing="kostalinverter:kostalinverter:inverter".
+ * The counters and histograms start with the initialization of the thing.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public interface PollingMetricsMXBean {
+
+    /**
+     * Distribution of the values of a histogram
+     */
+    final class Summary {
+        private final long count;
+        private final double mean;
+        private final double median;
+        private final double percentile90;
+        private final double percentile99;
+        private final double max;
+
+        public Summary(long count, double mean, double median, double percentile90, double percentile99,
+                double max) {
+            this.count = count;
+            this.mean = mean;
+            this.median = median;
+            this.percentile90 = percentile90;
+            this.percentile99 = percentile99;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getMedian() {
+            return median;
+        }
+
+        public double getPercentile90() {
+            return percentile90;
+        }
+
+        public double getPercentile99() {
+            return percentile99;
+        }
+
+        public double getMax() {
+            return max;
+        }
+    }
+
+    String getThingUID();
+
+    long getPolls();
+
+    long getAuthentications();
+
+    long getUnauthorizedResponses();
+
+    long getUnavailableResponses();
+
+    long getTimeouts();
+
+    long getErrors();
+
+    long getUpdates();
+
+    long getSkippedUpdates();
+
+    long getBytesReceived();
+
+    Summary getPollLatencyMillis();
+
+    Summary getRequestLatencyMillis();
+
+    Summary getAuthenticationLatencyMillis();
+
+    Summary getParseLatencyMillis();
+
+    Summary getUpdateLatencyMillis();
+
+    Summary getBytesPerPoll();
+
+    /**
+     * Starts all counters and histograms from zero
+     */
+    void reset();
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import javax.measure.quantity.Energy;
+import javax.measure.quantity.Power;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.QuantityType;
+import org.eclipse.smarthome.core.library.unit.SmartHomeUnits;
+import org.eclipse.smarthome.core.types.State;
+
+/**
+ * The {@link ReadingAggregator} keeps the last hour of the AC power of an inverter in a {@link ReadingRingBuffer} and
+ * provides the minimum, maximum, average and energy of the last minute, 15 minutes and hour as channels.
+ * Persisting these channels instead of the raw AC power stores fewer values of it, the other channels of the
+ * inverter are not aggregated.
+ * The handler passes every reading to {@link #record(String, State)} before it is filtered.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class ReadingAggregator {
+
+    // Windows of the aggregates, their lengths are ascending
+    private static final String[] WINDOW_SUFFIXES = { "1m", "15m", "1h" };
+    private static final long[] WINDOW_MILLIS = { TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(15),
+            TimeUnit.HOURS.toMillis(1) };
+
+    // Prefixes of the aggregate channel ids, the suffix names the window (e.g. powerAverage15m)
+    public static final String CHANNEL_POWER_MINIMUM = "powerMinimum";
+    public static final String CHANNEL_POWER_MAXIMUM = "powerMaximum";
+    public static final String CHANNEL_POWER_AVERAGE = "powerAverage";
+    public static final String CHANNEL_ENERGY = "energy";
+
+    // Limits the memory if the refresh interval is very short
+    private static final int MAX_CAPACITY = 3600;
+
+    private final String sourceChannelId;
+    private final ReadingRingBuffer buffer;
+
+    // Channel ids of the aggregates by window
+    private final String[] minimumChannels = new String[WINDOW_SUFFIXES.length];
+    private final String[] maximumChannels = new String[WINDOW_SUFFIXES.length];
+    private final String[] averageChannels = new String[WINDOW_SUFFIXES.length];
+    private final String[] energyChannels = new String[WINDOW_SUFFIXES.length];
+
+    /**
+     * Constructor of this class
+     *
+     * @param sourceChannelId          the channel with the AC power of the inverter
+     * @param refreshIntervalInSeconds shortest interval between two readings
+     */
+    public ReadingAggregator(String sourceChannelId, long refreshIntervalInSeconds) {
+        this.sourceChannelId = sourceChannelId;
+        long readingsPerHour = TimeUnit.HOURS.toSeconds(1) / Math.max(1, refreshIntervalInSeconds);
+        buffer = new ReadingRingBuffer((int) Math.min(MAX_CAPACITY, readingsPerHour + 2));
+        for (int window = 0; window < WINDOW_SUFFIXES.length; window++) {
+            minimumChannels[window] = CHANNEL_POWER_MINIMUM + WINDOW_SUFFIXES[window];
+            maximumChannels[window] = CHANNEL_POWER_MAXIMUM + WINDOW_SUFFIXES[window];
+            averageChannels[window] = CHANNEL_POWER_AVERAGE + WINDOW_SUFFIXES[window];
+            energyChannels[window] = CHANNEL_ENERGY + WINDOW_SUFFIXES[window];
+        }
+    }
+
+    /**
+     * @return the channel whose readings are aggregated
+     */
+    public String getSourceChannelId() {
+        return sourceChannelId;
+    }
+
+    /**
+     * @param channelId a channel id of the thing
+     * @return true if the channel is one of the aggregates
+     */
+    public boolean isAggregateChannel(String channelId) {
+        for (int window = 0; window < WINDOW_SUFFIXES.length; window++) {
+            if (channelId.equals(minimumChannels[window]) || channelId.equals(maximumChannels[window])
+                    || channelId.equals(averageChannels[window]) || channelId.equals(energyChannels[window])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param isLinked tells if the channel with the given id is linked
+     * @return true if any of the aggregates is linked, only then the source channel has to be read
+     */
+    public boolean isAnyLinked(Predicate<String> isLinked) {
+        for (int window = 0; window < WINDOW_SUFFIXES.length; window++) {
+            if (isLinked.test(minimumChannels[window]) || isLinked.test(maximumChannels[window])
+                    || isLinked.test(averageChannels[window]) || isLinked.test(energyChannels[window])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the reading of a channel, readings of other channels than the source or without a number are ignored
+     *
+     * @param channelId the channel of the reading
+     * @param state     the reading
+     * @return true if the reading has been added and the aggregates have changed
+     */
+    public boolean record(String channelId, State state) {
+        if (!sourceChannelId.equals(channelId)) {
+            return false;
+        }
+        double watt;
+        if (state instanceof QuantityType) {
+            QuantityType<?> power = ((QuantityType<?>) state).toUnit(SmartHomeUnits.WATT);
+            if (power == null) {
+                return false;
+            }
+            watt = power.doubleValue();
+        } else if (state instanceof DecimalType) {
+            watt = ((DecimalType) state).doubleValue();
+        } else {
+            return false;
+        }
+        buffer.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()), watt);
+        return true;
+    }
+
+    /**
+     * Forgets all readings, e.g. after the configuration changed
+     */
+    public void clear() {
+        buffer.clear();
+    }
+
+    /**
+     * Computes the aggregates and passes the ones of the linked channels to the publisher
+     *
+     * @param isLinked  tells if the channel with the given id is linked
+     * @param publisher receives the channel id and the state of each linked aggregate
+     */
+    public void publish(Predicate<String> isLinked, BiConsumer<String, State> publisher) {
+        if (!isAnyLinked(isLinked)) {
+            return;
+        }
+        ReadingRingBuffer.Aggregate[] aggregates = buffer.aggregate(WINDOW_MILLIS);
+        for (int window = 0; window < aggregates.length; window++) {
+            ReadingRingBuffer.Aggregate aggregate = aggregates[window];
+            if (aggregate == null) {
+                continue;
+            }
+            publish(isLinked, publisher, minimumChannels[window], power(aggregate.minimum));
+            publish(isLinked, publisher, maximumChannels[window], power(aggregate.maximum));
+            publish(isLinked, publisher, averageChannels[window], power(aggregate.average));
+            publish(isLinked, publisher, energyChannels[window],
+                    new QuantityType<Energy>(aggregate.integral / 1000, SmartHomeUnits.KILOWATT_HOUR));
+        }
+    }
+
+    private static void publish(Predicate<String> isLinked, BiConsumer<String, State> publisher, String channelId,
+            State state) {
+        if (isLinked.test(channelId)) {
+            publisher.accept(channelId, state);
+        }
+    }
+
+    private static State power(double watt) {
+        return new QuantityType<Power>(watt, SmartHomeUnits.WATT);
+    }
+}
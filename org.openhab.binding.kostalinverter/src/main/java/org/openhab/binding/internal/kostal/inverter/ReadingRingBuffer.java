@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+/**
+ * The {@link ReadingRingBuffer} keeps the readings of one channel for a fixed period in two primitive arrays. Once
+ * it is full, a new reading overwrites the oldest one, so it does not allocate anything after construction.
+ * The aggregates of several windows ending at the newest reading are computed in one pass from the newest to the
+ * oldest reading.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+final class ReadingRingBuffer {
+
+    private static final double MILLIS_PER_HOUR = 3_600_000;
+
+    private final long[] timestamps;
+    private final double[] values;
+
+    // Index of the next reading to write and number of readings kept
+    private int next;
+    private int size;
+
+    /**
+     * Constructor of this class
+     *
+     * @param capacity number of readings kept
+     */
+    ReadingRingBuffer(int capacity) {
+        timestamps = new long[Math.max(2, capacity)];
+        values = new double[timestamps.length];
+    }
+
+    /**
+     * Adds a reading, a reading which is not newer than the last one replaces it
+     *
+     * @param timestamp time of the reading (in ms), from a monotonic clock
+     * @param value     the reading
+     */
+    synchronized void add(long timestamp, double value) {
+        if (size > 0) {
+            int last = index(size - 1);
+            if (timestamp <= timestamps[last]) {
+                values[last] = value;
+                return;
+            }
+        }
+        timestamps[next] = timestamp;
+        values[next] = value;
+        next = (next + 1) % timestamps.length;
+        if (size < timestamps.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Removes all readings
+     */
+    synchronized void clear() {
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * Computes the aggregates of the windows ending at the newest reading. The readings are connected by straight
+     * lines, a window which starts between two readings begins with the interpolated value. A window which reaches
+     * back further than the oldest reading covers the readings kept.
+     *
+     * @param windowMillis lengths of the windows (in ms) in ascending order
+     * @return the aggregate of each window, null if there is no reading
+     */
+    synchronized Aggregate[] aggregate(long[] windowMillis) {
+        Aggregate[] aggregates = new Aggregate[windowMillis.length];
+        if (size == 0) {
+            return aggregates;
+        }
+        int newest = index(size - 1);
+        long end = timestamps[newest];
+        long t1 = end;
+        double v1 = values[newest];
+        double min = v1;
+        double max = v1;
+        // Integral of the readings over time (value * ms)
+        double area = 0;
+        int window = 0;
+        for (int n = size - 2; n >= 0 && window < windowMillis.length; n--) {
+            int i = index(n);
+            long t0 = timestamps[i];
+            double v0 = values[i];
+            while (window < windowMillis.length && t0 < end - windowMillis[window]) {
+                // The window starts within this segment, only the part from its start to t1 belongs to it
+                long start = end - windowMillis[window];
+                double startValue = v0 + (v1 - v0) * (start - t0) / (t1 - t0);
+                double startMin = Math.min(min, startValue);
+                double startMax = Math.max(max, startValue);
+                aggregates[window] = new Aggregate(startMin, startMax, area + (startValue + v1) / 2 * (t1 - start),
+                        end - start, v1);
+                window++;
+            }
+            area += (v0 + v1) / 2 * (t1 - t0);
+            min = Math.min(min, v0);
+            max = Math.max(max, v0);
+            t1 = t0;
+            v1 = v0;
+        }
+        for (; window < windowMillis.length; window++) {
+            aggregates[window] = new Aggregate(min, max, area, end - t1, v1);
+        }
+        return aggregates;
+    }
+
+    private int index(int n) {
+        return (next - size + n + timestamps.length) % timestamps.length;
+    }
+
+    /**
+     * Minimum, maximum, time weighted average and integral of the readings of a window
+     */
+    static final class Aggregate {
+
+        final double minimum;
+        final double maximum;
+        final double average;
+        // Integral over the window per hour, e.g. Wh for readings in W
+        final double integral;
+
+        private Aggregate(double minimum, double maximum, double area, long durationMillis, double firstValue) {
+            this.minimum = minimum;
+            this.maximum = maximum;
+            this.average = durationMillis > 0 ? area / durationMillis : firstValue;
+            this.integral = area / MILLIS_PER_HOUR;
+        }
+    }
+}
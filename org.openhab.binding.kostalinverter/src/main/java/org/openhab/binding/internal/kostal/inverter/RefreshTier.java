@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+/**
+ * The {@link RefreshTier} groups channels by how fast their values change, each tier can be refreshed with its own
+ * interval.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public enum RefreshTier {
+    /*
+     * Values which change continuously, e.g. power, voltage and current
+     */
+    LIVE,
+    /*
+     * State of the battery
+     */
+    BATTERY,
+    /*
+     * Statistics like yields and consumption per day or in total
+     */
+    STATISTICS,
+    /*
+     * Counters and events
+     */
+    EVENTS
+}
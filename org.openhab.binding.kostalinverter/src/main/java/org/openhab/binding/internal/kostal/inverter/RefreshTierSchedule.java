@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@link RefreshTierSchedule} decides which {@link RefreshTier}s are due for a refresh.
+ * The handler runs one job with the interval {@link #getTickInSeconds()} and on each tick requests the values of all
+ * due tiers together.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class RefreshTierSchedule {
+
+    private final Map<RefreshTier, Long> intervalsInSeconds = new EnumMap<>(RefreshTier.class);
+    private final long tickInSeconds;
+
+    // Seconds since the first tick
+    private long elapsedSeconds;
+    // Tiers of skipped ticks, they are due on the next tick
+    private final Set<RefreshTier> deferredTiers = EnumSet.noneOf(RefreshTier.class);
+
+    /**
+     * Constructor of this class
+     *
+     * @param defaultIntervalInSeconds interval of all tiers without an own interval
+     * @param intervalsInSeconds       intervals of the tiers, values below 1 are replaced by the default interval
+     */
+    public RefreshTierSchedule(long defaultIntervalInSeconds, Map<RefreshTier, Integer> intervalsInSeconds) {
+        long defaultInterval = Math.max(1, defaultIntervalInSeconds);
+        long tick = 0;
+        for (RefreshTier tier : RefreshTier.values()) {
+            Integer interval = intervalsInSeconds.get(tier);
+            long tierInterval = interval == null || interval < 1 ? defaultInterval : interval;
+            this.intervalsInSeconds.put(tier, tierInterval);
+            tick = tick == 0 ? tierInterval : gcd(tick, tierInterval);
+        }
+        this.tickInSeconds = tick;
+    }
+
+    /**
+     * @return the interval in which {@link #nextTick()} has to be called
+     */
+    public long getTickInSeconds() {
+        return tickInSeconds;
+    }
+
+    /**
+     * @return the interval of the given tier
+     */
+    public long getIntervalInSeconds(RefreshTier tier) {
+        return intervalsInSeconds.get(tier);
+    }
+
+    /**
+     * Advances the schedule by one tick
+     *
+     * @return the tiers which are due on this tick, on the first tick all tiers are due
+     */
+    public synchronized Set<RefreshTier> nextTick() {
+        Set<RefreshTier> dueTiers = EnumSet.copyOf(deferredTiers);
+        deferredTiers.clear();
+        for (Map.Entry<RefreshTier, Long> interval : intervalsInSeconds.entrySet()) {
+            if (elapsedSeconds % interval.getValue() == 0) {
+                dueTiers.add(interval.getKey());
+            }
+        }
+        elapsedSeconds += tickInSeconds;
+        return Collections.unmodifiableSet(dueTiers);
+    }
+
+    /**
+     * Hands back tiers which could not be refreshed, they are due again on the next tick
+     *
+     * @param tiers the tiers which have not been refreshed
+     */
+    public synchronized void defer(Set<RefreshTier> tiers) {
+        deferredTiers.addAll(tiers);
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,420 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.QuantityType;
+import org.eclipse.smarthome.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link SampleJournal} appends the numeric readings of one thing to segment files in the userdata folder, so that
+ * they are kept even if the persistence service is slow or not available.
+ * A record consists of the time (ms since the epoch), the ordinal of the channel and the value in the unit of the
+ * channel. It is written into a memory mapped segment, so appending a record neither copies nor calls the system.
+ * A full segment is completed and a new one is started, segments older than the retention are deleted.
+ * The ordinal of a channel is its line in the file {@value #CHANNELS_FILE} of the journal.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class SampleJournal implements Closeable {
+
+    // Folder of the journals in the userdata folder, each thing has a sub folder
+    private static final String JOURNAL_FOLDER = "kostalinverter";
+
+    static final String CHANNELS_FILE = "channels";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    // Header of a segment: magic number, format version, record size and a reserved int
+    private static final int MAGIC = 0x4b4f534a;
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    // Record: timestamp (long), channel ordinal (int), value (double)
+    static final int RECORD_SIZE = Long.BYTES + Integer.BYTES + Double.BYTES;
+
+    // Records per segment, about 1.3 MB
+    static final int SEGMENT_RECORDS = 65536;
+
+    private final Logger logger = LoggerFactory.getLogger(SampleJournal.class);
+
+    private final Path directory;
+    private final long retentionMillis;
+    private final int segmentRecords;
+
+    // Ordinals of the channels as stored in the channels file
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    // Current segment, its position is the next record, null once the journal is closed
+    private MappedByteBuffer segment;
+    private long sequence;
+
+    /**
+     * Receives the records of a replay
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        /**
+         * @param timestamp time of the reading (ms since the epoch)
+         * @param channelId the channel of the reading
+         * @param value     the reading in the unit of the channel
+         */
+        void accept(long timestamp, String channelId, double value) throws IOException;
+    }
+
+    /**
+     * Opens the journal in the given folder, the records are appended to the last segment
+     *
+     * @param directory       folder of the journal, created if it does not exist
+     * @param retentionMillis segments whose records are all older are deleted
+     * @throws IOException if the journal cannot be opened
+     */
+    public SampleJournal(Path directory, long retentionMillis) throws IOException {
+        this(directory, retentionMillis, SEGMENT_RECORDS);
+    }
+
+    SampleJournal(Path directory, long retentionMillis, int segmentRecords) throws IOException {
+        this.directory = directory;
+        this.retentionMillis = retentionMillis;
+        this.segmentRecords = segmentRecords;
+        Files.createDirectories(directory);
+        List<String> channels = readChannels(directory);
+        for (int ordinal = 0; ordinal < channels.size(); ordinal++) {
+            ordinals.putIfAbsent(channels.get(ordinal), ordinal);
+        }
+        openLastSegment();
+        deleteExpiredSegments(System.currentTimeMillis());
+    }
+
+    /**
+     * Opens the journal of a thing
+     *
+     * @param thingUID        the thing
+     * @param retentionInDays records are kept at least this long
+     * @return the journal or null if it cannot be opened
+     */
+    public static SampleJournal open(String thingUID, int retentionInDays) {
+        try {
+            return new SampleJournal(getDirectory(thingUID), TimeUnit.DAYS.toMillis(Math.max(1, retentionInDays)));
+        } catch (IOException e) {
+            LoggerFactory.getLogger(SampleJournal.class).warn("Cannot open the journal of {}: {}", thingUID,
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param thingUID the thing
+     * @return the folder of the journal of the thing
+     */
+    public static Path getDirectory(String thingUID) {
+        return Paths.get(ConfigConstants.getUserDataFolder(), JOURNAL_FOLDER, thingUID.replace(':', '_'));
+    }
+
+    /**
+     * Appends a reading, states which are not numbers are ignored.
+     * If the journal cannot be written it is closed.
+     *
+     * @param channelId the channel of the reading
+     * @param state     the reading
+     */
+    public synchronized void record(String channelId, State state) {
+        if (segment == null) {
+            return;
+        }
+        double value;
+        if (state instanceof QuantityType) {
+            value = ((QuantityType<?>) state).doubleValue();
+        } else if (state instanceof DecimalType) {
+            value = ((DecimalType) state).doubleValue();
+        } else {
+            return;
+        }
+        try {
+            append(System.currentTimeMillis(), getOrdinal(channelId), value);
+        } catch (IOException e) {
+            logger.warn("Stopped the journal {}: {}", directory, e.getMessage());
+            close();
+        }
+    }
+
+    synchronized void append(long timestamp, int ordinal, double value) throws IOException {
+        if (!segment.hasRemaining()) {
+            segment.force();
+            segment = createSegment(sequence + 1);
+            deleteExpiredSegments(timestamp);
+        }
+        int position = segment.position();
+        segment.putInt(position + Long.BYTES, ordinal);
+        segment.putDouble(position + Long.BYTES + Integer.BYTES, value);
+        // The timestamp is written last, a record without one marks the end of the segment
+        segment.putLong(position, timestamp);
+        segment.position(position + RECORD_SIZE);
+    }
+
+    /**
+     * Passes the records of the given period to the consumer in the order they were written
+     *
+     * @param from     start of the period (ms since the epoch)
+     * @param to       end of the period (ms since the epoch)
+     * @param consumer receives the records
+     * @throws IOException if the journal cannot be read or the consumer failed
+     */
+    public void replay(long from, long to, RecordConsumer consumer) throws IOException {
+        replay(directory, from, to, consumer);
+    }
+
+    /**
+     * Passes the records of the given period of a journal to the consumer, the journal may be written meanwhile
+     *
+     * @param directory folder of the journal
+     * @param from      start of the period (ms since the epoch)
+     * @param to        end of the period (ms since the epoch)
+     * @param consumer  receives the records
+     * @throws IOException if the journal cannot be read or the consumer failed
+     */
+    public static void replay(Path directory, long from, long to, RecordConsumer consumer) throws IOException {
+        List<String> channels = readChannels(directory);
+        List<Path> segments = listSegments(directory);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 4096);
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && getFirstTimestamp(segments.get(i + 1)) < from) {
+                // All records of the segment were written before the first one of the next segment
+                continue;
+            }
+            if (getFirstTimestamp(segments.get(i)) > to) {
+                break;
+            }
+            replaySegment(segments.get(i), from, to, channels, buffer, consumer);
+        }
+    }
+
+    /**
+     * Writes the records of the given period of a journal as CSV (time, channel, value)
+     *
+     * @param directory folder of the journal
+     * @param from      start of the period (ms since the epoch)
+     * @param to        end of the period (ms since the epoch)
+     * @param out       receives the lines
+     * @return the number of records written
+     * @throws IOException if the journal cannot be read or written to out
+     */
+    public static long export(Path directory, long from, long to, Appendable out) throws IOException {
+        long[] count = new long[1];
+        out.append("time,channel,value\n");
+        replay(directory, from, to, (timestamp, channelId, value) -> {
+            out.append(Instant.ofEpochMilli(timestamp).toString()).append(',').append(channelId).append(',')
+                    .append(Double.toString(value)).append('\n');
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Writes the current segment to the disk, further records are ignored
+     */
+    @Override
+    public synchronized void close() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    private int getOrdinal(String channelId) throws IOException {
+        Integer ordinal = ordinals.get(channelId);
+        if (ordinal == null) {
+            ordinal = ordinals.size();
+            Files.write(directory.resolve(CHANNELS_FILE), (channelId + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            ordinals.put(channelId, ordinal);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Continues the last segment after its last record or starts a new one if it is full or not readable
+     */
+    private void openLastSegment() throws IOException {
+        List<Path> segments = listSegments(directory);
+        long lastSequence = 0;
+        if (!segments.isEmpty()) {
+            Path file = segments.get(segments.size() - 1);
+            lastSequence = getSequence(file);
+            MappedByteBuffer buffer = map(file, Files.size(file));
+            if (isValid(buffer)) {
+                // Records are written in order, the first one without a timestamp marks the end
+                int low = 0;
+                int high = (buffer.limit() - HEADER_SIZE) / RECORD_SIZE;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (buffer.getLong(HEADER_SIZE + middle * RECORD_SIZE) != 0) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                buffer.position(HEADER_SIZE + low * RECORD_SIZE);
+                if (buffer.hasRemaining()) {
+                    segment = buffer;
+                    sequence = lastSequence;
+                    return;
+                }
+            } else {
+                logger.debug("Ignoring the unknown journal segment {}", file);
+            }
+        }
+        segment = createSegment(lastSequence + 1);
+    }
+
+    private MappedByteBuffer createSegment(long newSequence) throws IOException {
+        sequence = newSequence;
+        Path file = directory.resolve(getSegmentName(newSequence));
+        MappedByteBuffer buffer = map(file, HEADER_SIZE + (long) segmentRecords * RECORD_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0);
+        return buffer;
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        // The mapping stays valid after the channel has been closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static boolean isValid(ByteBuffer buffer) {
+        return buffer.limit() >= HEADER_SIZE && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION
+                && buffer.getInt(8) == RECORD_SIZE;
+    }
+
+    /**
+     * Deletes the segments whose records are all older than the retention, the current segment is kept
+     */
+    private void deleteExpiredSegments(long now) throws IOException {
+        List<Path> segments = listSegments(directory);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            long next = getFirstTimestamp(segments.get(i + 1));
+            if (next == 0 || next >= now - retentionMillis) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(segments.get(i));
+            } catch (IOException e) {
+                // E.g. a segment which is still mapped on Windows, it is deleted with the next segment
+                logger.debug("Cannot delete the journal segment {}: {}", segments.get(i), e.getMessage());
+            }
+        }
+    }
+
+    private static void replaySegment(Path file, long from, long to, List<String> channels, ByteBuffer buffer,
+            RecordConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear().limit(HEADER_SIZE);
+            if (channel.read(buffer) < HEADER_SIZE || !isValid(buffer)) {
+                return;
+            }
+            buffer.clear();
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    long timestamp = buffer.getLong();
+                    int ordinal = buffer.getInt();
+                    double value = buffer.getDouble();
+                    if (timestamp == 0) {
+                        // End of the records
+                        return;
+                    }
+                    if (timestamp >= from && timestamp <= to && ordinal >= 0 && ordinal < channels.size()) {
+                        consumer.accept(timestamp, channels.get(ordinal), value);
+                    }
+                }
+                buffer.compact();
+            }
+        }
+    }
+
+    private static List<String> readChannels(Path directory) throws IOException {
+        Path file = directory.resolve(CHANNELS_FILE);
+        if (!Files.exists(file)) {
+            return Collections.emptyList();
+        }
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the segments of the journal, oldest first
+     */
+    private static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                    SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path segment : stream) {
+                    segments.add(segment);
+                }
+            }
+        }
+        // The names contain the zero padded sequence number, so they sort in the order the segments were started
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static String getSegmentName(long sequence) {
+        return String.format("%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    private static long getSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the time of the first record of the segment, 0 if it has none
+     */
+    private static long getFirstTimestamp(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            if (channel.read(buffer, HEADER_SIZE) < Long.BYTES) {
+                return 0;
+            }
+            return buffer.getLong(0);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.firstgeneration;
+
+import java.util.List;
+
+/**
+ * Collects the non empty text content of all elements with a given tag of a web interface page.
+ * The page is scanned once per refresh, the channels pick their value by index from the collected cells.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public interface CellExtractor {
+
+    /**
+     * Scans the page for elements with the given tag.
+     *
+     * @param page the html page as returned by the inverter
+     * @param tag the tag name of the elements to collect, e.g. td
+     * @param cells receives the trimmed text of each element which is not empty, in document order. The list is
+     *            cleared before, so that it can be reused for every refresh
+     */
+    void extract(String page, String tag, List<String> cells);
+
+    /**
+     * Returns the extractor configured by the given name.
+     *
+     * @param name jsoup for the full html parser, anything else for the streaming tokenizer
+     */
+    static CellExtractor forName(String name) {
+        if (JsoupCellExtractor.NAME.equalsIgnoreCase(name)) {
+            return new JsoupCellExtractor();
+        }
+        return new StreamingCellExtractor();
+    }
+
+    /**
+     * Strips the non breaking spaces the web interface uses as placeholders for empty cells.
+     */
+    static String clean(String content) {
+        return content.replace("\u00A0", "").trim();
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.firstgeneration;
+
+import java.util.List;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+
+/**
+ * {@link CellExtractor} based on the Jsoup DOM. It copes with any markup but builds the whole document tree.
+ *
+ * @author Christian Schneider - Initial contribution (as part of WebscrapeHandler.java)
+ * @author Örjan Backsell - Extracted as CellExtractor
+ */
+public class JsoupCellExtractor implements CellExtractor {
+    static final String NAME = "jsoup";
+
+    @Override
+    public void extract(String page, String tag, List<String> cells) {
+        cells.clear();
+        for (Element element : Jsoup.parse(page).getElementsByTag(tag)) {
+            String content = CellExtractor.clean(element.text());
+            if (!content.isEmpty()) {
+                cells.add(content);
+            }
+        }
+    }
+}
@@ -14,10 +14,18 @@ package org.openhab.binding.internal.kostal.inverter.firstgeneration;
 
 /**
  * @author Christian Schneider - Initial contribution
+ * @author Örjan Backsell - State filter, idle refresh and journal parameters
  */
 public class SourceConfig {
     public String url;
     public String userName;
     public String password;
     public int refreshInterval;
+    public double absoluteDeadband;
+    public double relativeDeadbandPercent;
+    public int maxSilenceInSeconds;
+    public String parser;
+    public int maxIdleRefreshInterval;
+    public boolean journal;
+    public int journalRetentionInDays;
 }
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.firstgeneration;
+
+import java.util.List;
+
+import org.jsoup.parser.Parser;
+
+/**
+ * {@link CellExtractor} which scans the page as a stream of tags and text without building a document tree.
+ * It only knows the few html constructs used by the web interface of the inverters: comments, script and style
+ * blocks and table cells without a closing tag. Character entities are decoded by the Jsoup {@link Parser} and the
+ * text is normalized like {@link org.jsoup.nodes.Element#text()} does, so both extractors deliver the same cells.
+ *
+ * Instances are not thread safe, every handler uses its own one.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class StreamingCellExtractor implements CellExtractor {
+    // Text of the current cell as it appears in the page, entities are decoded when a tag ends it
+    private final StringBuilder rawText = new StringBuilder();
+
+    private final StringBuilder text = new StringBuilder();
+
+    @Override
+    public void extract(String page, String tag, List<String> cells) {
+        cells.clear();
+        rawText.setLength(0);
+        text.setLength(0);
+        boolean inCell = false;
+        int length = page.length();
+        int pos = 0;
+        while (pos < length) {
+            char c = page.charAt(pos);
+            if (c == '<') {
+                appendRawText();
+                if (page.startsWith("<!--", pos)) {
+                    pos = skipPast(page, "-->", pos + 4);
+                    continue;
+                }
+                int end = page.indexOf('>', pos + 1);
+                if (end < 0) {
+                    break;
+                }
+                boolean closing = page.charAt(pos + 1) == '/';
+                int nameStart = closing ? pos + 2 : pos + 1;
+                int nameEnd = nameStart;
+                while (nameEnd < end && Character.isLetterOrDigit(page.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+                pos = end + 1;
+                if (isTag(page, nameStart, nameEnd, tag)) {
+                    // A new cell implicitly closes the previous one
+                    if (inCell) {
+                        addCell(cells);
+                    }
+                    inCell = !closing && page.charAt(end - 1) != '/';
+                } else if (!closing && (isTag(page, nameStart, nameEnd, "script")
+                        || isTag(page, nameStart, nameEnd, "style"))) {
+                    pos = skipPast(page, "</" + page.substring(nameStart, nameEnd), pos);
+                    pos = skipPast(page, ">", pos);
+                } else if (inCell) {
+                    if (closing && (isTag(page, nameStart, nameEnd, "tr")
+                            || isTag(page, nameStart, nameEnd, "table"))) {
+                        addCell(cells);
+                        inCell = false;
+                    } else if (isTag(page, nameStart, nameEnd, "br")) {
+                        appendText(' ');
+                    }
+                }
+            } else {
+                if (inCell) {
+                    rawText.append(c);
+                }
+                pos++;
+            }
+        }
+        appendRawText();
+        if (inCell) {
+            addCell(cells);
+        }
+    }
+
+    private void appendRawText() {
+        if (rawText.length() == 0) {
+            return;
+        }
+        String decoded = Parser.unescapeEntities(rawText.toString(), false);
+        for (int i = 0; i < decoded.length(); i++) {
+            appendText(decoded.charAt(i));
+        }
+        rawText.setLength(0);
+    }
+
+    private void appendText(char c) {
+        if (isWhitespace(c)) {
+            // Collapse whitespace to a single blank and drop it at the start of a cell
+            int length = text.length();
+            if (length > 0 && text.charAt(length - 1) != ' ') {
+                text.append(' ');
+            }
+        } else {
+            text.append(c);
+        }
+    }
+
+    // The same characters Jsoup regards as whitespace, including the non breaking space
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00A0';
+    }
+
+    private void addCell(List<String> cells) {
+        String content = CellExtractor.clean(text.toString());
+        if (!content.isEmpty()) {
+            cells.add(content);
+        }
+        text.setLength(0);
+    }
+
+    private static boolean isTag(String page, int nameStart, int nameEnd, String tag) {
+        return nameEnd - nameStart == tag.length() && page.regionMatches(true, nameStart, tag, 0, tag.length());
+    }
+
+    private static int skipPast(String page, String marker, int pos) {
+        int end = page.indexOf(marker, pos);
+        return end < 0 ? page.length() : end + marker.length();
+    }
+}
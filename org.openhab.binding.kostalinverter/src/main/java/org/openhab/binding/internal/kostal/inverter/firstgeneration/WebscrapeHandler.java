@@ -14,11 +14,13 @@ package org.openhab.binding.internal.kostal.inverter.firstgeneration;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Base64;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.zip.CRC32;
 
 import javax.measure.Unit;
 
@@ -34,28 +36,68 @@ import org.eclipse.smarthome.core.thing.binding.BaseThingHandler;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.core.types.UnDefType;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
+import org.openhab.binding.internal.kostal.inverter.AdaptiveRefreshInterval;
+import org.openhab.binding.internal.kostal.inverter.ChannelStateFilter;
+import org.openhab.binding.internal.kostal.inverter.CircuitBreaker;
+import org.openhab.binding.internal.kostal.inverter.KostalPollingCoordinator;
+import org.openhab.binding.internal.kostal.inverter.PollingMetrics;
+import org.openhab.binding.internal.kostal.inverter.ReadingAggregator;
+import org.openhab.binding.internal.kostal.inverter.SampleJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * @author Christian Schneider - Initial contribution
  * @author Christoph Weitkamp - Incorporated new QuantityType (Units of Measurement)
+ * @author Örjan Backsell - Single pass page scan, polling coordinator, state filter, circuit breaker, aggregates,
+ *         journal and metrics
  */
 public class WebscrapeHandler extends BaseThingHandler {
+    private static final String CHANNEL_AC_POWER = "acPower";
+    private static final String CHANNEL_STATUS = "status";
+
     private Logger logger = LoggerFactory.getLogger(WebscrapeHandler.class);
     private SourceConfig config;
+    private ChannelStateFilter stateFilter;
+    private CellExtractor cellExtractor;
+
+    // Cells of the last page per tag, reused for every refresh
+    private final Map<String, List<String>> cellsByTag = new HashMap<>();
+
+    // Authorization header, encoded once per configuration
+    private String authorization;
+
+    // Validators and checksum of the last page, used to skip refreshes while the page does not change
+    private String etag;
+    private String lastModified;
+    private long pageChecksum = -1;
+    private long lastPublished;
+    private volatile boolean publishPending;
 
     private final List<ChannelConfig> channelConfigs = new ArrayList<>();
 
-    public WebscrapeHandler(Thing thing) {
+    private final KostalPollingCoordinator pollingCoordinator;
+    private KostalPollingCoordinator.Registration refreshJob;
+    private AdaptiveRefreshInterval adaptiveInterval;
+    private CircuitBreaker circuitBreaker;
+    private ReadingAggregator readingAggregator;
+
+    // Keeps the readings on disk if enabled, null otherwise
+    private SampleJournal journal;
+
+    // Latencies and failures of the refreshes
+    private PollingMetrics pollingMetrics;
+
+    public WebscrapeHandler(Thing thing, KostalPollingCoordinator pollingCoordinator) {
         super(thing);
-        channelConfigs.add(new ChannelConfig("acPower", "td", 4, SmartHomeUnits.WATT));
+        this.pollingCoordinator = pollingCoordinator;
+        channelConfigs.add(new ChannelConfig(CHANNEL_AC_POWER, "td", 4, SmartHomeUnits.WATT));
         channelConfigs.add(new ChannelConfig("totalEnergy", "td", 7, SmartHomeUnits.KILOWATT_HOUR));
         channelConfigs.add(new ChannelConfig("dayEnergy", "td", 10, SmartHomeUnits.KILOWATT_HOUR));
-        channelConfigs.add(new ChannelConfig("status", "td", 13, null));
+        channelConfigs.add(new ChannelConfig(CHANNEL_STATUS, "td", 13, null));
         channelConfigs.add(new ChannelConfig("str1Voltage", "td", 19, SmartHomeUnits.VOLT));
         channelConfigs.add(new ChannelConfig("str1Current", "td", 25, SmartHomeUnits.AMPERE));
         channelConfigs.add(new ChannelConfig("str2Voltage", "td", 33, SmartHomeUnits.VOLT));
@@ -66,21 +108,79 @@ public class WebscrapeHandler extends BaseThingHandler {
         channelConfigs.add(new ChannelConfig("l2Power", "td", 42, SmartHomeUnits.WATT));
         channelConfigs.add(new ChannelConfig("l3Voltage", "td", 46, SmartHomeUnits.VOLT));
         channelConfigs.add(new ChannelConfig("l3Power", "td", 49, SmartHomeUnits.WATT));
+        for (ChannelConfig cConfig : channelConfigs) {
+            cellsByTag.computeIfAbsent(cConfig.tag, tag -> new ArrayList<>());
+        }
     }
 
     @Override
     public void initialize() {
         config = getConfigAs(SourceConfig.class);
-        scheduler.scheduleWithFixedDelay(() -> {
+        stateFilter = new ChannelStateFilter(config.absoluteDeadband, config.relativeDeadbandPercent,
+                config.maxSilenceInSeconds);
+        cellExtractor = CellExtractor.forName(config.parser);
+        String login = config.userName + ":" + config.password;
+        authorization = "Basic " + new String(Base64.getEncoder().encode(login.getBytes()));
+        etag = null;
+        lastModified = null;
+        pageChecksum = -1;
+        lastPublished = 0;
+        publishPending = false;
+        adaptiveInterval = new AdaptiveRefreshInterval(config.refreshInterval, config.maxIdleRefreshInterval);
+        circuitBreaker = new CircuitBreaker(config.refreshInterval);
+        readingAggregator = new ReadingAggregator(CHANNEL_AC_POWER, config.refreshInterval);
+        if (config.journal) {
+            journal = SampleJournal.open(getThing().getUID().toString(), config.journalRetentionInDays);
+        }
+        pollingMetrics = PollingMetrics.register(getThing().getUID().toString());
+        refreshJob = pollingCoordinator.register(config.url, 0, config.refreshInterval, completion -> {
+            if (!adaptiveInterval.isDue() || !circuitBreaker.allowRequest()) {
+                completion.run();
+                return;
+            }
+            long pollStart = System.nanoTime();
             try {
                 refresh();
+                adaptiveInterval.update(isIdle());
+                if (circuitBreaker.recordSuccess()) {
+                    logger.debug("Source '{}' is reachable again", getThing().getUID());
+                }
                 updateStatus(ThingStatus.ONLINE);
             } catch (Exception e) {
-                logger.debug("Error refreshing source '{}'", getThing().getUID(), e);
-                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
-                        e.getClass().getName() + ":" + e.getMessage());
+                if (e instanceof HttpStatusException) {
+                    pollingMetrics.recordStatus(((HttpStatusException) e).getStatusCode());
+                } else {
+                    pollingMetrics.recordFailure(e);
+                }
+                adaptiveInterval.update(null);
+                // While the inverter stays unreachable the failure is only reported now and then
+                if (circuitBreaker.recordFailure()) {
+                    logger.debug("Error refreshing source '{}'", getThing().getUID(), e);
+                    updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
+                            e.getClass().getName() + ":" + e.getMessage());
+                }
+            } finally {
+                pollingMetrics.pollCompleted(pollStart);
+                pollingMetrics.publish(this::isLinked, this::updateState);
+                completion.run();
             }
-        }, 0, config.refreshInterval, TimeUnit.SECONDS);
+        });
+    }
+
+    @Override
+    public void dispose() {
+        if (refreshJob != null) {
+            refreshJob.cancel();
+            refreshJob = null;
+        }
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        if (pollingMetrics != null) {
+            pollingMetrics.unregister();
+        }
+        super.dispose();
     }
 
     @Override
@@ -88,34 +188,148 @@ public class WebscrapeHandler extends BaseThingHandler {
         // Read only
     }
 
+    @Override
+    public void channelLinked(ChannelUID channelUID) {
+        if (stateFilter != null) {
+            stateFilter.reset(channelUID.getId());
+        }
+        // The page may not change for a long time, the new channel gets the last known value
+        publishPending = true;
+        super.channelLinked(channelUID);
+    }
+
     private void refresh() throws Exception {
-        Document doc = getDoc();
+        String page = getPage();
+        if (page != null) {
+            long parseStart = System.nanoTime();
+            for (Map.Entry<String, List<String>> entry : cellsByTag.entrySet()) {
+                cellExtractor.extract(page, entry.getKey(), entry.getValue());
+            }
+            pollingMetrics.recordSince(PollingMetrics.Phase.PARSE, parseStart);
+        }
+        long updateStart = System.nanoTime();
+        // An unchanged page is a reading as well
+        recordReadings();
+        if (page == null) {
+            if (publishPending || lastPublished == 0) {
+                // Unchanged page, the cells of the last one are published for new channels or the first time
+                logger.trace("Page of '{}' did not change, publishing the last values", getThing().getUID());
+            } else {
+                logger.trace("Page of '{}' did not change", getThing().getUID());
+                pollingMetrics.recordSince(PollingMetrics.Phase.UPDATE, updateStart);
+                return;
+            }
+        }
+        publishPending = false;
+        lastPublished = System.currentTimeMillis();
         for (ChannelConfig cConfig : channelConfigs) {
             Channel channel = getThing().getChannel(cConfig.id);
             if (channel != null) {
-                String value = getTag(doc, cConfig.tag).get(cConfig.num);
-                updateState(channel.getUID(), getState(value, cConfig.unit));
+                List<String> cells = cellsByTag.get(cConfig.tag);
+                // The page may have less cells than configured, e.g. while the inverter is switched off
+                State state = cConfig.num < cells.size() ? getState(cells.get(cConfig.num), cConfig.unit)
+                        : UnDefType.UNDEF;
+                if (journal != null) {
+                    journal.record(cConfig.id, state);
+                }
+                if (stateFilter.filter(cConfig.id, state)) {
+                    updateState(channel.getUID(), state);
+                    pollingMetrics.recordUpdate(true);
+                } else {
+                    pollingMetrics.recordUpdate(false);
+                }
             }
         }
+        pollingMetrics.recordSince(PollingMetrics.Phase.UPDATE, updateStart);
     }
 
-    private static List<String> getTag(Document doc, String tag) {
-        ArrayList<String> result = new ArrayList<String>();
-        Iterator<Element> elIt = doc.getElementsByTag(tag).iterator();
-        while (elIt.hasNext()) {
-            String content = elIt.next().text();
-            content = content.replace("\u00A0", "").trim();
-            if (!content.isEmpty()) {
-                result.add(content);
+    /**
+     * Adds the AC power of the last page to the aggregates and updates them
+     */
+    private void recordReadings() {
+        for (ChannelConfig cConfig : channelConfigs) {
+            List<String> cells = cellsByTag.get(cConfig.tag);
+            if (CHANNEL_AC_POWER.equals(cConfig.id) && cConfig.num < cells.size()
+                    && readingAggregator.record(cConfig.id, getState(cells.get(cConfig.num), cConfig.unit))) {
+                readingAggregator.publish(this::isLinked, this::publishAggregate);
             }
         }
-        return result;
     }
 
-    private Document getDoc() throws IOException {
-        String login = config.userName + ":" + config.password;
-        String base64login = new String(Base64.getEncoder().encode(login.getBytes()));
-        return Jsoup.connect(config.url).header("Authorization", "Basic " + base64login).get();
+    private void publishAggregate(String channelId, State state) {
+        boolean published = stateFilter.filter(channelId, state);
+        if (published) {
+            updateState(channelId, state);
+        }
+        pollingMetrics.recordUpdate(published);
+    }
+
+    /**
+     * Tells from the cells of the last page if the inverter is idle
+     *
+     * @return true if it is switched off or does not produce power, null if the page does not tell
+     */
+    private Boolean isIdle() {
+        Boolean idle = null;
+        for (ChannelConfig cConfig : channelConfigs) {
+            List<String> cells = cellsByTag.get(cConfig.tag);
+            if (cConfig.num >= cells.size()) {
+                continue;
+            }
+            String value = cells.get(cConfig.num);
+            if (CHANNEL_AC_POWER.equals(cConfig.id)) {
+                try {
+                    if (AdaptiveRefreshInterval.isIdlePower(Double.parseDouble(value))) {
+                        return true;
+                    }
+                    idle = false;
+                } catch (NumberFormatException e) {
+                    // No power shown
+                }
+            } else if (CHANNEL_STATUS.equals(cConfig.id)) {
+                if (AdaptiveRefreshInterval.isIdleStatus(value)) {
+                    return true;
+                }
+                idle = false;
+            }
+        }
+        return idle;
+    }
+
+    /**
+     * Fetches the page of the web interface.
+     *
+     * @return the page or null if it did not change since the last call
+     */
+    private String getPage() throws IOException {
+        Connection connection = Jsoup.connect(config.url).header("Authorization", authorization);
+        if (etag != null) {
+            connection.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            connection.header("If-Modified-Since", lastModified);
+        }
+        long requestStart = System.nanoTime();
+        Connection.Response response = connection.execute();
+        pollingMetrics.recordSince(PollingMetrics.Phase.REQUEST, requestStart);
+        pollingMetrics.recordStatus(response.statusCode());
+        if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return null;
+        }
+        etag = response.header("ETag");
+        lastModified = response.header("Last-Modified");
+
+        // Most inverters do not send any validators, so the body itself is compared with the last one
+        byte[] body = response.bodyAsBytes();
+        pollingMetrics.recordResponse(body.length);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        long checksum = crc.getValue();
+        if (checksum == pageChecksum) {
+            return null;
+        }
+        pageChecksum = checksum;
+        return response.body();
     }
 
     private State getState(String value, Unit<?> unit) {
@@ -13,14 +13,20 @@
 
 package org.openhab.binding.internal.kostal.inverter.secondgeneration;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
+import org.openhab.binding.internal.kostal.inverter.RefreshTier;
 
 /**
  * The {@link SecondGenerationBindingConstants} class defines common constants, which are
  * used across the whole binding.
  *
  * @author Örjan Backsell - Initial contribution Piko1020, Piko New Generation
+ * @author Örjan Backsell - Refresh tiers
  */
 @NonNullByDefault
 public class SecondGenerationBindingConstants {
@@ -83,4 +89,29 @@ public class SecondGenerationBindingConstants {
     public static final String CHANNEL_BATTERYVOLTAGE = "batteryVoltage";
     public static final String CHANNEL_BATSTATEOFCHARGE = "batStateOfCharge";
 
+    // Refresh tiers of all channels which are not refreshed with the live values
+    public static final Map<String, RefreshTier> CHANNEL_REFRESH_TIERS;
+    static {
+        Map<String, RefreshTier> tiers = new HashMap<>();
+        tiers.put(CHANNEL_YIELD_DAY, RefreshTier.STATISTICS);
+        tiers.put(CHANNEL_YIELD_TOTAL, RefreshTier.STATISTICS);
+        tiers.put(CHANNEL_HOMECONSUMPTION_DAY, RefreshTier.STATISTICS);
+        tiers.put(CHANNEL_OWNCONSUMPTION_DAY, RefreshTier.STATISTICS);
+        tiers.put(CHANNEL_OWNCONSRATE_DAY, RefreshTier.STATISTICS);
+        tiers.put(CHANNEL_AUTONOMYDEGREE_DAY, RefreshTier.STATISTICS);
+        tiers.put(CHANNEL_HOMECONSUMPTION_TOTAL, RefreshTier.STATISTICS);
+        tiers.put(CHANNEL_OWNCONSUMPTION_TOTAL, RefreshTier.STATISTICS);
+        tiers.put(CHANNEL_TOTALOPERATINGTIME, RefreshTier.STATISTICS);
+        tiers.put(CHANNEL_OWNCONSRATE_TOTAL, RefreshTier.STATISTICS);
+        tiers.put(CHANNEL_AUTONOMYDEGREE_TOTAL, RefreshTier.STATISTICS);
+        tiers.put(CHANNEL_CURRENT, RefreshTier.BATTERY);
+        tiers.put(CHANNEL_CURRENTDIR, RefreshTier.BATTERY);
+        tiers.put(CHANNEL_CHARGECYCLES, RefreshTier.BATTERY);
+        tiers.put(CHANNEL_BATTERYTEMPERATURE, RefreshTier.BATTERY);
+        tiers.put(CHANNEL_BATTERYVOLTAGE, RefreshTier.BATTERY);
+        tiers.put(CHANNEL_BATSTATEOFCHARGE, RefreshTier.BATTERY);
+        tiers.put(CHANNEL_LOGINTERVAL, RefreshTier.EVENTS);
+        tiers.put(CHANNEL_S0INPULSECNT, RefreshTier.EVENTS);
+        CHANNEL_REFRESH_TIERS = Collections.unmodifiableMap(tiers);
+    }
 }
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.openhab.binding.internal.kostal.inverter.secondgeneration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.measure.Unit;
+
+import org.eclipse.smarthome.core.library.types.QuantityType;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.UnDefType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * The {@link SecondGenerationChannelIndex} is the immutable assignment of dxsIds to channels of one thing.
+ * It is built once when the thing is initialized and routes each value of a response to its channel,
+ * independent of the order and completeness of the response.
+ *
+ * The dxsIds are kept as a sorted int array, each entry decodes its value straight from the JSON token into the
+ * state of its channel, without an intermediate String or BigDecimal.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+final class SecondGenerationChannelIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SecondGenerationChannelIndex.class);
+
+    // Text values (e.g. the operating status) repeat on every refresh, their states are shared by all inverters
+    private static final int MAX_TEXT_STATES = 256;
+    private static final Map<String, StringType> TEXT_STATES = new ConcurrentHashMap<>();
+
+    /**
+     * Channel, unit and decoder of one dxsId
+     */
+    static final class Entry {
+        final int dxsId;
+        final String channelId;
+        final Unit<?> unit;
+        final double scale;
+
+        private Entry(SecondGenerationDxsCatalogue.Definition definition) {
+            this.dxsId = definition.dxsId;
+            this.channelId = definition.channelId;
+            this.unit = definition.unit;
+            this.scale = definition.scale;
+        }
+
+        /**
+         * Reads the value of this entry from the reader, which is positioned in front of it
+         *
+         * @return the state of the channel or null if the inverter did not send a value
+         */
+        State decode(JsonReader reader) throws IOException {
+            if (unit != null && reader.peek() == JsonToken.NUMBER) {
+                return toQuantity(reader.nextDouble());
+            }
+            String value = readText(reader);
+            return value == null ? null : decode(value);
+        }
+
+        /**
+         * Decodes a value which has been read before its dxsId was known
+         */
+        State decode(String value) {
+            if (unit == null) {
+                return toText(value);
+            }
+            try {
+                return toQuantity(Double.parseDouble(value));
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Error parsing value '{}'", value, e);
+                return UnDefType.UNDEF;
+            }
+        }
+
+        private State toQuantity(double value) {
+            return new QuantityType<>(scale == 1 ? value : value * scale, unit);
+        }
+    }
+
+    private final SecondGenerationDxsCatalogue catalogue;
+
+    // Sorted dxsIds and their entries at the same positions
+    private final int[] dxsIds;
+    private final Entry[] entries;
+
+    SecondGenerationChannelIndex(SecondGenerationDxsCatalogue catalogue) {
+        List<Entry> sortedEntries = new ArrayList<>();
+        for (SecondGenerationDxsCatalogue.Definition definition : catalogue.getDefinitions()) {
+            sortedEntries.add(new Entry(definition));
+        }
+        // Stable sort, the first channel of a dxsId wins
+        sortedEntries.sort((a, b) -> Integer.compare(a.dxsId, b.dxsId));
+        List<Entry> uniqueEntries = new ArrayList<>();
+        for (Entry entry : sortedEntries) {
+            if (uniqueEntries.isEmpty() || uniqueEntries.get(uniqueEntries.size() - 1).dxsId != entry.dxsId) {
+                uniqueEntries.add(entry);
+            }
+        }
+        this.entries = uniqueEntries.toArray(new Entry[0]);
+        this.dxsIds = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            dxsIds[i] = entries[i].dxsId;
+        }
+        this.catalogue = catalogue;
+    }
+
+    /**
+     * @return the channel assigned to the dxsId or null if the dxsId is not mapped to a channel
+     */
+    Entry get(int dxsId) {
+        int index = Arrays.binarySearch(dxsIds, dxsId);
+        return index < 0 ? null : entries[index];
+    }
+
+    /**
+     * @return the catalogue this index has been built from
+     */
+    SecondGenerationDxsCatalogue getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * Reads a value as text, numbers are returned as they were sent
+     *
+     * @return the text or null for a JSON null
+     */
+    static String readText(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NULL:
+                reader.nextNull();
+                return null;
+            case BOOLEAN:
+                return Boolean.toString(reader.nextBoolean());
+            default:
+                return reader.nextString();
+        }
+    }
+
+    private static StringType toText(String value) {
+        StringType state = TEXT_STATES.get(value);
+        if (state == null) {
+            state = new StringType(value);
+            if (TEXT_STATES.size() < MAX_TEXT_STATES) {
+                TEXT_STATES.putIfAbsent(value, state);
+            }
+        }
+        return state;
+    }
+}
@@ -17,15 +17,23 @@ package org.openhab.binding.internal.kostal.inverter.secondgeneration;
  * The {@link KostalInverterPikoNewGenConfiguration} class contains fields mapping thing configuration parameters.
  *
  * @author Örjan Backsell - Initial contribution Piko1020, Piko New Generation
+ * @author Örjan Backsell - Refresh tiers, state filter, idle refresh, catalogue and journal parameters
  *
  */
 public class SecondGenerationConfiguration {
 
-    public static final long REFRESHINTERVAL = 60;
-
     public String dxsEntriesCfgFile;
-    public String dxsEntriesCfgFileExt;
-    public String dxsEntriesCfgFileExtExt;
+    public int maxDxsEntriesPerRequest;
+    public int refreshInterval;
+    public int batteryRefreshInterval;
+    public int statisticsRefreshInterval;
+    public int eventsRefreshInterval;
+    public double absoluteDeadband;
+    public double relativeDeadbandPercent;
+    public int maxSilenceInSeconds;
+    public int maxIdleRefreshInterval;
+    public boolean journal;
+    public int journalRetentionInDays;
     public Object url;
     public String username;
     public String password;
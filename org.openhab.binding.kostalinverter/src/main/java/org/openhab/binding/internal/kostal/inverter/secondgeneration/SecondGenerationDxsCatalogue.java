@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.openhab.binding.internal.kostal.inverter.secondgeneration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.measure.Unit;
+
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.eclipse.smarthome.core.library.unit.SIUnits;
+import org.eclipse.smarthome.core.library.unit.SmartHomeUnits;
+
+/**
+ * The {@link SecondGenerationDxsCatalogue} defines which dxsEntries are read from the inverter and how they are
+ * mapped to the channels. The bundled catalogue covers all channels of the binding, a user supplied file may add or
+ * drop values without a new release of the binding.
+ *
+ * Each line of a catalogue file defines one value: {@code <channel id> = <dxsId>[, <unit>[, <scale>]]}.
+ * The unit is the name of a constant of {@link SmartHomeUnits} or {@link SIUnits}, values without unit are text.
+ * Catalogues are immutable, a file is loaded again only when it has been modified.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+final class SecondGenerationDxsCatalogue {
+
+    static final String BUNDLED_CATALOGUE = "/dxs/secondgeneration-dxsentries.cfg";
+
+    /**
+     * Channel, unit and scale of one dxsId
+     */
+    static final class Definition {
+        final String channelId;
+        final int dxsId;
+        final Unit<?> unit;
+        final double scale;
+
+        Definition(String channelId, int dxsId, Unit<?> unit, double scale) {
+            this.channelId = channelId;
+            this.dxsId = dxsId;
+            this.unit = unit;
+            this.scale = scale;
+        }
+    }
+
+    private static volatile SecondGenerationDxsCatalogue bundled;
+
+    // Catalogues of user supplied files by their absolute path
+    private static final Map<String, SecondGenerationDxsCatalogue> USER_CATALOGUES = new ConcurrentHashMap<>();
+
+    private final List<Definition> definitions;
+    private final String source;
+    private final long lastModified;
+
+    private SecondGenerationDxsCatalogue(List<Definition> definitions, String source, long lastModified) {
+        this.definitions = Collections.unmodifiableList(definitions);
+        this.source = source;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns the catalogue of a file, the file is only read if it has been modified since the last call
+     *
+     * @param file path of a user supplied catalogue, relative to the openHAB configuration folder. The bundled
+     *            catalogue is used if it is empty
+     * @throws IOException if the file cannot be read or contains an invalid definition
+     */
+    static SecondGenerationDxsCatalogue get(String file) throws IOException {
+        if (file == null || file.trim().isEmpty()) {
+            return getBundled();
+        }
+        File catalogueFile = new File(file.trim());
+        if (!catalogueFile.isAbsolute()) {
+            catalogueFile = new File(ConfigConstants.getConfigFolder(), file.trim());
+        }
+        String path = catalogueFile.getAbsolutePath();
+        long lastModified = catalogueFile.lastModified();
+        if (lastModified == 0) {
+            throw new IOException("dxsEntries catalogue " + path + " not found");
+        }
+        SecondGenerationDxsCatalogue catalogue = USER_CATALOGUES.get(path);
+        if (catalogue == null || catalogue.lastModified != lastModified) {
+            try (InputStream inputStream = new FileInputStream(catalogueFile)) {
+                catalogue = parse(inputStream, path, lastModified);
+            }
+            USER_CATALOGUES.put(path, catalogue);
+        }
+        return catalogue;
+    }
+
+    private static SecondGenerationDxsCatalogue getBundled() throws IOException {
+        SecondGenerationDxsCatalogue catalogue = bundled;
+        if (catalogue == null) {
+            try (InputStream inputStream = SecondGenerationDxsCatalogue.class
+                    .getResourceAsStream(BUNDLED_CATALOGUE)) {
+                if (inputStream == null) {
+                    throw new IOException("Bundled dxsEntries catalogue " + BUNDLED_CATALOGUE + " is missing");
+                }
+                catalogue = parse(inputStream, BUNDLED_CATALOGUE, 0);
+            }
+            bundled = catalogue;
+        }
+        return catalogue;
+    }
+
+    static SecondGenerationDxsCatalogue parse(InputStream inputStream, String source, long lastModified)
+            throws IOException {
+        List<Definition> definitions = new ArrayList<>();
+        Set<String> channelIds = new HashSet<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            Definition definition = parseDefinition(line);
+            if (definition == null) {
+                throw new IOException("Invalid definition in line " + lineNumber + " of " + source + ": " + line);
+            }
+            // A channel can only show one value, the first definition wins
+            if (channelIds.add(definition.channelId)) {
+                definitions.add(definition);
+            }
+        }
+        return new SecondGenerationDxsCatalogue(definitions, source, lastModified);
+    }
+
+    private static Definition parseDefinition(String line) {
+        int separator = line.indexOf('=');
+        if (separator <= 0) {
+            return null;
+        }
+        String channelId = line.substring(0, separator).trim();
+        String[] fields = line.substring(separator + 1).split(",");
+        try {
+            int dxsId = Integer.parseInt(fields[0].trim());
+            Unit<?> unit = null;
+            if (fields.length > 1 && !fields[1].trim().isEmpty()) {
+                unit = getUnit(fields[1].trim());
+                if (unit == null) {
+                    return null;
+                }
+            }
+            double scale = fields.length > 2 ? Double.parseDouble(fields[2].trim()) : 1;
+            return new Definition(channelId, dxsId, unit, scale);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Unit<?> getUnit(String name) {
+        for (Class<?> units : new Class<?>[] { SmartHomeUnits.class, SIUnits.class }) {
+            try {
+                Field field = units.getField(name);
+                Object unit = field.get(null);
+                if (unit instanceof Unit) {
+                    return (Unit<?>) unit;
+                }
+            } catch (NoSuchFieldException | IllegalAccessException e) {
+                // try the next class
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the definitions in the order of the file
+     */
+    List<Definition> getDefinitions() {
+        return definitions;
+    }
+
+    /**
+     * @return the file or resource the catalogue has been read from
+     */
+    String getSource() {
+        return source;
+    }
+}
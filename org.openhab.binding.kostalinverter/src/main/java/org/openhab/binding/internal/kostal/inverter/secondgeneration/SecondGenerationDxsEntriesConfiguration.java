@@ -13,42 +13,39 @@
 
 package org.openhab.binding.internal.kostal.inverter.secondgeneration;
 
-import java.util.ArrayList;
-import java.util.List;
+import static org.openhab.binding.internal.kostal.inverter.secondgeneration.SecondGenerationConfigurationBindingConstants.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author Örjan Backsell - Initial contribution Piko1020, Piko New Generation
+ * @author Örjan Backsell - Coalesced writes
  */
 public class SecondGenerationDxsEntriesConfiguration {
 
-    public static String[] getDxsEntriesConfiguration() {
-        List<String> dxsEntriesConfigurationList = new ArrayList<>(22);
-        dxsEntriesConfigurationList.add("BatteryType");
-        dxsEntriesConfigurationList.add("33556252");
-        dxsEntriesConfigurationList.add("BatteryUsageConsumption");
-        dxsEntriesConfigurationList.add("33556249");
-        dxsEntriesConfigurationList.add("BatteryUsageStrategy");
-        dxsEntriesConfigurationList.add("83888896");
-        dxsEntriesConfigurationList.add("SmartBatteryControl");
-        dxsEntriesConfigurationList.add("33556484");
-        dxsEntriesConfigurationList.add("SmartBatteryControl_Text");
-        dxsEntriesConfigurationList.add("33556484");
-        dxsEntriesConfigurationList.add("BatteryChargeTimeFrom");
-        dxsEntriesConfigurationList.add("33556239");
-        dxsEntriesConfigurationList.add("BatteryChargeTimeTo");
-        dxsEntriesConfigurationList.add("33556240");
-        dxsEntriesConfigurationList.add("MaxDepthOfDischarge");
-        dxsEntriesConfigurationList.add("33556247");
-        dxsEntriesConfigurationList.add("ShadowManagement");
-        dxsEntriesConfigurationList.add("33556483");
-        dxsEntriesConfigurationList.add("ExternalModuleControl");
-        dxsEntriesConfigurationList.add("33556482");
-        dxsEntriesConfigurationList.add("InverterName");
-        dxsEntriesConfigurationList.add("16777984");
-
-        // Create an dxsEntries array
-        String[] dxsEntriesConfiguration = new String[22];
+    private static final Map<String, String> DXS_ENTRIES_CONFIGURATION;
+    static {
+        Map<String, String> dxsEntriesConfiguration = new HashMap<>();
+        dxsEntriesConfiguration.put(CHANNEL_BATTERYTYPE, "33556252");
+        dxsEntriesConfiguration.put(CHANNEL_BATTERYUSAGECONSUMPTION, "33556249");
+        dxsEntriesConfiguration.put(CHANNEL_BATTERYUSAGESTRATEGY, "83888896");
+        dxsEntriesConfiguration.put(CHANNEL_SMARTBATTERYCONTROL, "33556484");
+        dxsEntriesConfiguration.put(CHANNEL_SMARTBATTERYCONTROL_TEXT, "33556484");
+        dxsEntriesConfiguration.put(CHANNEL_BATTERYCHARGETIMEFROM, "33556239");
+        dxsEntriesConfiguration.put(CHANNEL_BATTERYCHARGETIMETO, "33556240");
+        dxsEntriesConfiguration.put(CHANNEL_MAXDEPTHOFDISCHARGE, "33556247");
+        dxsEntriesConfiguration.put(CHANNEL_SHADOWMANAGEMENT, "33556483");
+        dxsEntriesConfiguration.put(CHANNEL_EXTERNALMODULECONTROL, "33556482");
+        dxsEntriesConfiguration.put(CHANNEL_INVERTERNAME, "16777984");
+        DXS_ENTRIES_CONFIGURATION = Collections.unmodifiableMap(dxsEntriesConfiguration);
+    }
 
-        return dxsEntriesConfiguration;
+    /**
+     * @return the dxsIds of the writable values, keyed by their channel id
+     */
+    public static Map<String, String> getDxsEntriesConfiguration() {
+        return DXS_ENTRIES_CONFIGURATION;
     }
 }
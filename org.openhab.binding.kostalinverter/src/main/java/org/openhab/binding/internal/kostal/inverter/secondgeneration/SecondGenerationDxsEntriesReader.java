@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.openhab.binding.internal.kostal.inverter.secondgeneration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.smarthome.core.types.State;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * The {@link SecondGenerationDxsEntriesReader} decodes dxs.json responses directly from the response stream.
+ * Each value is decoded into the state of its channel as soon as it has been read, the response is never buffered
+ * as a whole and no objects are created for entries which are not assigned to a channel.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+final class SecondGenerationDxsEntriesReader {
+
+    private static final String DXS_ENTRIES = "dxsEntries";
+    private static final String DXS_ID = "dxsId";
+    private static final String VALUE = "value";
+
+    /**
+     * Receives the decoded values of a response
+     */
+    @FunctionalInterface
+    interface ValueConsumer {
+        void accept(SecondGenerationChannelIndex.Entry entry, State state);
+    }
+
+    private SecondGenerationDxsEntriesReader() {
+    }
+
+    /**
+     * Reads the dxsEntries of a dxs.json response
+     *
+     * @param inputStream the response stream, UTF-8 encoded
+     * @param index assigns the dxsIds to the channels
+     * @param consumer receives the value of each entry assigned to a channel, in the order of the response
+     * @throws IOException if the stream can not be read or does not contain the expected JSON
+     */
+    static void read(InputStream inputStream, SecondGenerationChannelIndex index, ValueConsumer consumer)
+            throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (DXS_ENTRIES.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readEntry(reader, index, consumer);
+                }
+                reader.endArray();
+            } else {
+                // session, status and anything else is not needed
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readEntry(JsonReader reader, SecondGenerationChannelIndex index, ValueConsumer consumer)
+            throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        SecondGenerationChannelIndex.Entry entry = null;
+        boolean dxsIdRead = false;
+        State state = null;
+        // The inverter sends the dxsId first, a value in front of it is kept as text
+        String pendingValue = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (DXS_ID.equals(name)) {
+                entry = index.get(readDxsId(reader));
+                dxsIdRead = true;
+            } else if (VALUE.equals(name)) {
+                if (!dxsIdRead) {
+                    pendingValue = SecondGenerationChannelIndex.readText(reader);
+                } else if (entry != null) {
+                    state = entry.decode(reader);
+                } else {
+                    reader.skipValue();
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (entry != null) {
+            if (state == null && pendingValue != null) {
+                state = entry.decode(pendingValue);
+            }
+            if (state != null) {
+                consumer.accept(entry, state);
+            }
+        }
+    }
+
+    private static int readDxsId(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NUMBER) {
+            return reader.nextInt();
+        }
+        String dxsId = SecondGenerationChannelIndex.readText(reader);
+        try {
+            return dxsId == null ? -1 : Integer.parseInt(dxsId.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -13,26 +13,35 @@
 
 package org.openhab.binding.internal.kostal.inverter.secondgeneration;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import static org.openhab.binding.internal.kostal.inverter.secondgeneration.SecondGenerationBindingConstants.CHANNEL_DCPOWERPV;
+import static org.openhab.binding.internal.kostal.inverter.secondgeneration.SecondGenerationBindingConstants.CHANNEL_GRIDOUTPUTPOWER;
+import static org.openhab.binding.internal.kostal.inverter.secondgeneration.SecondGenerationBindingConstants.CHANNEL_OPERATING_STATUS;
+import static org.openhab.binding.internal.kostal.inverter.secondgeneration.SecondGenerationBindingConstants.CHANNEL_REFRESH_TIERS;
+import static org.openhab.binding.internal.kostal.inverter.secondgeneration.SecondGenerationConfigurationBindingConstants.CHANNEL_INVERTERNAME;
+import static org.openhab.binding.internal.kostal.inverter.secondgeneration.SecondGenerationConfigurationBindingConstants.CHANNEL_SMARTBATTERYCONTROL;
+import static org.openhab.binding.internal.kostal.inverter.secondgeneration.SecondGenerationConfigurationBindingConstants.CHANNEL_SMARTBATTERYCONTROL_TEXT;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
-import java.net.URL;
-import java.net.URLConnection;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-
-import javax.measure.Unit;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.eclipse.smarthome.core.library.types.QuantityType;
 import org.eclipse.smarthome.core.library.types.StringType;
 //import org.eclipse.jdt.annotation.NonNullByDefault;
 //import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.smarthome.core.library.unit.SIUnits;
-import org.eclipse.smarthome.core.library.unit.SmartHomeUnits;
-import org.eclipse.smarthome.core.thing.Channel;
 import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingStatus;
@@ -42,11 +51,19 @@ import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
 import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.core.types.UnDefType;
+import org.openhab.binding.internal.kostal.inverter.AdaptiveRefreshInterval;
+import org.openhab.binding.internal.kostal.inverter.ChannelStateFilter;
+import org.openhab.binding.internal.kostal.inverter.CircuitBreaker;
+import org.openhab.binding.internal.kostal.inverter.KostalPollingCoordinator;
+import org.openhab.binding.internal.kostal.inverter.PollingMetrics;
+import org.openhab.binding.internal.kostal.inverter.ReadingAggregator;
+import org.openhab.binding.internal.kostal.inverter.RefreshTier;
+import org.openhab.binding.internal.kostal.inverter.RefreshTierSchedule;
+import org.openhab.binding.internal.kostal.inverter.SampleJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
 
 /**
  * The {@link SecondGenerationHandler} is responsible for handling commands, which are
@@ -55,12 +72,17 @@ import com.google.gson.GsonBuilder;
  * @author Christian Schneider - Initial contribution
  * @author Christoph Weitkamp - Incorporated new QuantityType (Units of Measurement)
  * @author Örjan Backsell - Redesigned regarding Piko1020, Piko New Generation models
+ * @author Örjan Backsell - Session reuse, batched reads and writes, stream decoding, polling coordinator, state filter,
+ *         circuit breaker, aggregates, journal and metrics
  */
 // @NonNullByDefault
-public class SecondGenerationHandler extends BaseThingHandler {
+public class SecondGenerationHandler extends BaseThingHandler implements SecondGenerationWriteQueue.WriteListener {
 
     private final Logger logger = LoggerFactory.getLogger(SecondGenerationHandler.class);
 
+    // Refresh interval in seconds if none is configured
+    static final int DEFAULT_REFRESH_INTERVAL = 60;
+
     // @Nullable
     private SecondGenerationConfiguration config;
 
@@ -68,431 +90,440 @@ public class SecondGenerationHandler extends BaseThingHandler {
     // @Nullable
     private SecondGenerationBindingConstants configurationConfig;
 
-    private final List<SecondGenerationChannelConfig> channelConfigs = new ArrayList<>();
-    private final List<SecondGenerationChannelConfig> channelConfigsExt = new ArrayList<>();
-    private final List<SecondGenerationChannelConfig> channelConfigsExtExt = new ArrayList<>();
+    // Assignment of the dxsIds to the channels, built once in initialize()
+    private volatile SecondGenerationChannelIndex channelIndex;
+
+    // Keeps the login session for configuration changes
+    private SecondGenerationSessionManager sessionManager;
+
+    // Collects configuration changes to send them in one request
+    private SecondGenerationWriteQueue writeQueue;
+
+    // Requests to read the linked channels of the due refresh tiers, rebuilt when the links change
+    private final Map<Set<RefreshTier>, List<String>> queryPlans = new ConcurrentHashMap<>();
+
+    // Suppresses updates of channels whose value did not change
+    private volatile ChannelStateFilter stateFilter;
+
+    // Decides which refresh tiers are read on a tick of the refresh job
+    private volatile RefreshTierSchedule refreshSchedule;
+
+    // Shared http client of the binding
+    private final HttpClient httpClient;
+
+    // Set while the requests of a refresh are outstanding, the next refresh is skipped until they completed
+    private final AtomicBoolean refreshInProgress = new AtomicBoolean();
+
+    // Runs the refreshes of all inverters of the binding
+    private final KostalPollingCoordinator pollingCoordinator;
+
+    private KostalPollingCoordinator.Registration refreshJob;
+
+    // Slows down the refresh while the inverter does not produce power
+    private volatile AdaptiveRefreshInterval adaptiveInterval;
+
+    // Stops the refresh for a while if the inverter cannot be reached
+    private volatile CircuitBreaker circuitBreaker;
+
+    // Minimum, maximum, average and energy of the grid output power over the last minute, 15 minutes and hour
+    private volatile ReadingAggregator readingAggregator;
 
-    public SecondGenerationHandler(Thing thing) {
+    // Keeps the readings on disk if enabled, null otherwise
+    private volatile SampleJournal journal;
+
+    // Latencies and failures of the refreshes
+    private volatile PollingMetrics pollingMetrics;
+
+    public SecondGenerationHandler(Thing thing, HttpClient httpClient, KostalPollingCoordinator pollingCoordinator) {
         super(thing);
+        this.httpClient = httpClient;
+        this.pollingCoordinator = pollingCoordinator;
     }
 
     // @SuppressWarnings("null")
     @Override
     public void handleCommand(ChannelUID channelUID, Command command) {
-        String url = config.url.toString();
-        String username = config.username;
-        String password = config.password;
-        String dxsIdConfiguration = "";
-        String valueConfiguration = "";
-
         if (command instanceof RefreshType) {
             logger.debug("Handle command for {} on channel {}: {}", thing.getUID(), channelUID, command);
+            return;
         }
 
-        if (command == RefreshType.REFRESH) {
+        String dxsIdConfiguration = SecondGenerationDxsEntriesConfiguration.getDxsEntriesConfiguration()
+                .get(channelUID.getId());
+        if (dxsIdConfiguration == null) {
+            // Read only channel
             return;
         }
 
-        if (channelUID.getId().equals("batteryType")) {
-            dxsIdConfiguration = "33556252";
-            valueConfiguration = command.toString();
-
-            try {
-                SecondGenerationConfigurationHandler.configurationHandler(url, username, password, dxsIdConfiguration,
-                        valueConfiguration);
-            } catch (Exception e) {
-                logger.error("Unexpected error in KostalConfigurationHandler.configurationHandler, batteryType !", e);
-            }
+        JsonPrimitive valueConfiguration = getValueConfiguration(channelUID.getId(), command);
+        if (valueConfiguration == null) {
+            logger.warn("Inverter {} rejects {} for channel {}, the value is not valid", thing.getUID(), command,
+                    channelUID.getId());
+            return;
         }
 
-        if (channelUID.getId().equals("batteryUsageConsumption")) {
-            dxsIdConfiguration = "33556249";
-            valueConfiguration = command.toString();
-
-            try {
-                SecondGenerationConfigurationHandler.configurationHandler(url, username, password, dxsIdConfiguration,
-                        valueConfiguration);
-            } catch (Exception e) {
-                logger.error(
-                        "Unexpected error in KostalConfigurationHandler.configurationHandler, batteryUsageConsumption  !",
-                        e);
-            }
+        // The inverter is polled at the configured interval again to show the effect of the command
+        if (adaptiveInterval != null) {
+            adaptiveInterval.reset();
         }
 
-        if (channelUID.getId().equals("batteryUsageStrategy")) {
-            dxsIdConfiguration = "83888896";
-            valueConfiguration = command.toString();
+        // Commands sent together (e.g. by one rule) are written in one request
+        writeQueue.enqueue(channelUID, dxsIdConfiguration, valueConfiguration, command);
+    }
 
-            try {
-                SecondGenerationConfigurationHandler.configurationHandler(url, username, password, dxsIdConfiguration,
-                        valueConfiguration);
-            } catch (Exception e) {
-                logger.error(
-                        "Unexpected error in KostalConfigurationHandler.configurationHandler, batteryUsageStrategy !",
-                        e);
-            }
+    // Converts a command into the value sent to the inverter, null if it is not valid for the channel
+    private static JsonPrimitive getValueConfiguration(String channelId, Command command) {
+        if (channelId.equals(CHANNEL_INVERTERNAME)) {
+            // The inverter name is the only value which is sent as a JSON string
+            return new JsonPrimitive(command.toString());
         }
-
-        if (channelUID.getId().equals("smartBatteryControl")) {
-            dxsIdConfiguration = "33556484";
-            valueConfiguration = "";
-            if (command == OnOffType.ON) {
-                valueConfiguration = "True";
+        if (channelId.equals(CHANNEL_SMARTBATTERYCONTROL) || channelId.equals(CHANNEL_SMARTBATTERYCONTROL_TEXT)) {
+            if (command instanceof OnOffType) {
+                return new JsonPrimitive(command == OnOffType.ON);
             }
-            if (command == OnOffType.OFF) {
-                valueConfiguration = "False";
+            String text = command.toString();
+            if ("true".equalsIgnoreCase(text) || "false".equalsIgnoreCase(text)) {
+                return new JsonPrimitive(Boolean.valueOf(text));
             }
+            return null;
+        }
+        // All other writable values are numbers
+        if (command instanceof QuantityType) {
+            return new JsonPrimitive(((QuantityType<?>) command).toBigDecimal());
+        }
+        if (command instanceof DecimalType) {
+            return new JsonPrimitive(((DecimalType) command).toBigDecimal());
+        }
+        try {
+            return new JsonPrimitive(new BigDecimal(command.toString().trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 
-            try {
-                SecondGenerationConfigurationHandler.configurationHandler(url, username, password, dxsIdConfiguration,
-                        valueConfiguration);
-            } catch (Exception e) {
-                logger.error(
-                        "Unexpected error in KostalConfigurationHandler.configurationHandler, smartBatteryControl !",
-                        e);
+    @Override
+    public void writeCompleted(ChannelUID channelUID, Command command, boolean success) {
+        // The next value read from the inverter is published in any case
+        stateFilter.reset(channelUID.getId());
+        if (success) {
+            if (command instanceof State) {
+                updateState(channelUID, (State) command);
             }
+        } else {
+            logger.warn("Inverter {} did not take {} for channel {}", thing.getUID(), command, channelUID.getId());
+            updateState(channelUID, UnDefType.UNDEF);
         }
+    }
 
-        if (channelUID.getId().equals("smartBatteryControl_Text")) {
-            dxsIdConfiguration = "33556484";
-            valueConfiguration = command.toString();
-
-            try {
-                SecondGenerationConfigurationHandler.configurationHandler(url, username, password, dxsIdConfiguration,
-                        valueConfiguration);
-            } catch (Exception e) {
-                logger.error(
-                        "Unexpected error in KostalConfigurationHandler.configurationHandler, smartBatteryControl_Text !",
-                        e);
-            }
+    @Override
+    public void dispose() {
+        if (refreshJob != null) {
+            refreshJob.cancel();
+            refreshJob = null;
         }
+        if (writeQueue != null) {
+            writeQueue.dispose();
+        }
+        SampleJournal sampleJournal = journal;
+        if (sampleJournal != null) {
+            journal = null;
+            sampleJournal.close();
+        }
+        if (pollingMetrics != null) {
+            pollingMetrics.unregister();
+        }
+        super.dispose();
+    }
+
+    @Override
+    public void initialize() {
+        config = getConfigAs(SecondGenerationConfiguration.class);
+        sessionManager = new SecondGenerationSessionManager(httpClient, config.url.toString(), config.username,
+                config.password);
+        writeQueue = new SecondGenerationWriteQueue(scheduler, sessionManager, this);
 
-        if (channelUID.getId().equals("batteryChargeTimeFrom")) {
-            dxsIdConfiguration = "33556239";
-            valueConfiguration = command.toString();
+        updateStatus(ThingStatus.UNKNOWN);
 
-            try {
-                SecondGenerationConfigurationHandler.configurationHandler(url, username, password, dxsIdConfiguration,
-                        valueConfiguration);
-            } catch (Exception e) {
-                logger.error(
-                        "Unexpected error in KostalConfigurationHandler.configurationHandler, batteryChargeTimeFrom !",
-                        e);
-            }
+        stateFilter = new ChannelStateFilter(config.absoluteDeadband, config.relativeDeadbandPercent,
+                config.maxSilenceInSeconds);
+
+        Map<RefreshTier, Integer> tierIntervals = new EnumMap<>(RefreshTier.class);
+        tierIntervals.put(RefreshTier.BATTERY, config.batteryRefreshInterval);
+        tierIntervals.put(RefreshTier.STATISTICS, config.statisticsRefreshInterval);
+        tierIntervals.put(RefreshTier.EVENTS, config.eventsRefreshInterval);
+        refreshSchedule = new RefreshTierSchedule(
+                config.refreshInterval > 0 ? config.refreshInterval : DEFAULT_REFRESH_INTERVAL, tierIntervals);
+
+        adaptiveInterval = new AdaptiveRefreshInterval(refreshSchedule.getTickInSeconds(),
+                config.maxIdleRefreshInterval);
+        circuitBreaker = new CircuitBreaker(refreshSchedule.getTickInSeconds());
+        readingAggregator = new ReadingAggregator(CHANNEL_GRIDOUTPUTPOWER, refreshSchedule.getTickInSeconds());
+        if (config.journal) {
+            journal = SampleJournal.open(getThing().getUID().toString(), config.journalRetentionInDays);
         }
+        pollingMetrics = PollingMetrics.register(getThing().getUID().toString());
 
-        if (channelUID.getId().equals("batteryChargeTimeTo")) {
-            dxsIdConfiguration = "33556240";
-            valueConfiguration = command.toString();
+        // The catalogue defines which values are read from the inverter
+        try {
+            channelIndex = new SecondGenerationChannelIndex(
+                    SecondGenerationDxsCatalogue.get(config.dxsEntriesCfgFile));
+        } catch (IOException e) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, e.getMessage());
+            return;
+        }
+        queryPlans.clear();
+
+        refreshInProgress.set(false);
+        refreshJob = pollingCoordinator.register(config.url.toString(), 0, refreshSchedule.getTickInSeconds(),
+                completion -> {
+                    try {
+                        refresh(completion);
+                    } catch (Exception e) {
+                        refreshCompleted(e);
+                        completion.run();
+                    }
+                });
+    }
 
-            try {
-                SecondGenerationConfigurationHandler.configurationHandler(url, username, password, dxsIdConfiguration,
-                        valueConfiguration);
-            } catch (Exception e) {
-                logger.error(
-                        "Unexpected error in KostalConfigurationHandler.configurationHandler, batteryChargeTimeTo !",
-                        e);
+    /**
+     * Switches to the catalogue file if it has been modified since it was loaded
+     */
+    private void reloadCatalogue() {
+        try {
+            SecondGenerationDxsCatalogue catalogue = SecondGenerationDxsCatalogue.get(config.dxsEntriesCfgFile);
+            if (catalogue != channelIndex.getCatalogue()) {
+                logger.debug("Reloaded dxsEntries catalogue {} for {}", catalogue.getSource(), getThing().getUID());
+                channelIndex = new SecondGenerationChannelIndex(catalogue);
+                queryPlans.clear();
             }
+        } catch (IOException e) {
+            logger.debug("Keeping the current dxsEntries catalogue of {}: {}", getThing().getUID(), e.getMessage());
         }
+    }
 
-        if (channelUID.getId().equals("maxDepthOfDischarge")) {
-            dxsIdConfiguration = "33556247";
-            valueConfiguration = command.toString();
+    @Override
+    public void channelLinked(ChannelUID channelUID) {
+        if (stateFilter != null) {
+            stateFilter.reset(channelUID.getId());
+        }
+        queryPlans.clear();
+        super.channelLinked(channelUID);
+    }
 
-            try {
-                SecondGenerationConfigurationHandler.configurationHandler(url, username, password, dxsIdConfiguration,
-                        valueConfiguration);
-            } catch (Exception e) {
-                logger.error(
-                        "Unexpected error in KostalConfigurationHandler.configurationHandler, maxDepthOfDischarge !",
-                        e);
+    @Override
+    public void channelUnlinked(ChannelUID channelUID) {
+        queryPlans.clear();
+        super.channelUnlinked(channelUID);
+    }
+
+    /**
+     * Builds the requests for the dxsIds of all linked channels of the given refresh tiers, merged into as few requests
+     * as possible
+     */
+    private List<String> getQueryPlan(Set<RefreshTier> tiers) {
+        List<String> plan = queryPlans.get(tiers);
+        if (plan == null) {
+            Set<String> dxsIds = new LinkedHashSet<>();
+            for (SecondGenerationDxsCatalogue.Definition definition : channelIndex.getCatalogue().getDefinitions()) {
+                if (tiers.contains(getRefreshTier(definition.channelId))
+                        && (isLinked(definition.channelId) || isIdleProbe(definition.channelId)
+                                || isAggregateSource(definition.channelId))) {
+                    dxsIds.add(Integer.toString(definition.dxsId));
+                }
             }
+            plan = SecondGenerationQueryPlanner.planRequests(config.url.toString(), dxsIds,
+                    config.maxDxsEntriesPerRequest);
+            queryPlans.put(new HashSet<>(tiers), plan);
         }
+        return plan;
+    }
 
-        if (channelUID.getId().equals("shadowManagement")) {
-            dxsIdConfiguration = "33556483";
-            valueConfiguration = command.toString();
+    /**
+     * The channels which tell if the inverter is idle are read even if they are not linked
+     */
+    private boolean isIdleProbe(String channelId) {
+        return adaptiveInterval.isEnabled()
+                && (CHANNEL_DCPOWERPV.equals(channelId) || CHANNEL_OPERATING_STATUS.equals(channelId));
+    }
 
-            try {
-                SecondGenerationConfigurationHandler.configurationHandler(url, username, password, dxsIdConfiguration,
-                        valueConfiguration);
-            } catch (Exception e) {
-                logger.error("Unexpected error in KostalConfigurationHandler.configurationHandler, shadowManagement !",
-                        e);
-            }
+    /**
+     * The grid output power is read even if it is not linked as long as one of its aggregates is linked
+     */
+    private boolean isAggregateSource(String channelId) {
+        ReadingAggregator aggregator = readingAggregator;
+        return aggregator.getSourceChannelId().equals(channelId) && aggregator.isAnyLinked(this::isLinked);
+    }
+
+    private static RefreshTier getRefreshTier(String channelId) {
+        return CHANNEL_REFRESH_TIERS.getOrDefault(channelId, RefreshTier.LIVE);
+    }
+
+    /**
+     * Requests the values of the due tiers
+     *
+     * @param completion run when all requests completed
+     */
+    private void refresh(Runnable completion) {
+        if (!adaptiveInterval.isDue()) {
+            completion.run();
+            return;
+        }
+        reloadCatalogue();
+        Set<RefreshTier> dueTiers = refreshSchedule.nextTick();
+        if (dueTiers.isEmpty()) {
+            completion.run();
+            return;
+        }
+        List<String> requests = getQueryPlan(dueTiers);
+        if (requests.isEmpty()) {
+            // Nothing linked to read, the status keeps reflecting the last contact with the inverter
+            completion.run();
+            return;
+        }
+        if (!refreshInProgress.compareAndSet(false, true)) {
+            logger.debug("Previous refresh of {} has not completed yet, skipping this one", getThing().getUID());
+            refreshSchedule.defer(dueTiers);
+            completion.run();
+            return;
+        }
+        if (!circuitBreaker.allowRequest()) {
+            // The inverter was not reachable, the values are read once it answers again
+            refreshInProgress.set(false);
+            refreshSchedule.defer(dueTiers);
+            completion.run();
+            return;
         }
 
-        if (channelUID.getId().equals("externalModuleControl")) {
-            dxsIdConfiguration = "33556482";
-            valueConfiguration = command.toString();
+        // Catch data from actual DxsEntries of all linked channels, the channels are updated when a response arrives
+        RefreshCallback callback = new RefreshCallback(requests.size(), completion);
+        for (String request : requests) {
+            SecondGenerationHttpHelper.executeHttpGetAsync(httpClient, request, callback);
+        }
+    }
 
-            try {
-                SecondGenerationConfigurationHandler.configurationHandler(url, username, password, dxsIdConfiguration,
-                        valueConfiguration);
-            } catch (Exception e) {
-                logger.error(
-                        "Unexpected error in KostalConfigurationHandler.configurationHandler, externalModuleControl !",
-                        e);
+    private void refreshCompleted(Throwable failure) {
+        refreshInProgress.set(false);
+        if (failure == null) {
+            if (circuitBreaker.recordSuccess()) {
+                logger.debug("Inverter {} is reachable again", getThing().getUID());
             }
+            updateStatus(ThingStatus.ONLINE);
+        } else if (circuitBreaker.recordFailure()) {
+            // While the inverter stays unreachable the failure is only reported now and then
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
+                    failure.getClass().getName() + ":" + failure.getMessage());
+            logger.debug("Error refreshing source = {}", getThing().getUID(), failure);
         }
+    }
 
-        if (channelUID.getId().equals("inverterName")) {
-            dxsIdConfiguration = "16777984";
-            valueConfiguration = command.toString();
+    private void updateChannel(SecondGenerationChannelIndex.Entry entry, State state) {
+        SampleJournal sampleJournal = journal;
+        if (sampleJournal != null) {
+            sampleJournal.record(entry.channelId, state);
+        }
+        publishState(entry.channelId, state);
+        if (readingAggregator.record(entry.channelId, state)) {
+            readingAggregator.publish(this::isLinked, this::publishState);
+        }
+    }
 
-            try {
-                SecondGenerationConfigurationHandler.configurationHandler(url, username, password, dxsIdConfiguration,
-                        valueConfiguration);
-            } catch (Exception e) {
-                logger.error("Unexpected error in KostalConfigurationHandler.configurationHandler, inverterName !", e);
-            }
+    private void publishState(String channelId, State state) {
+        boolean published = stateFilter.filter(channelId, state);
+        if (published) {
+            updateState(channelId, state);
         }
+        pollingMetrics.recordUpdate(published);
     }
 
-    @Override
-    public void initialize() {
-        config = getConfigAs(SecondGenerationConfiguration.class);
+    /**
+     * Receives the responses of one refresh and reports the result once all requests have completed
+     */
+    private class RefreshCallback implements SecondGenerationHttpHelper.ResponseHandler {
 
-        scheduler.scheduleWithFixedDelay(new Runnable() {
-
-            @Override
-            public void run() {
-                try {
-                    refresh();
-                    updateStatus(ThingStatus.ONLINE);
-                } catch (Exception e) {
-                    updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
-                            e.getClass().getName() + ":" + e.getMessage());
-                    logger.debug("Error refreshing source = {}", getThing().getUID(), e);
-                }
-            }
+        private final AtomicInteger outstandingRequests;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final Runnable completion;
 
-        }, 0, SecondGenerationConfiguration.REFRESHINTERVAL, TimeUnit.SECONDS);
+        // All requests of a refresh are sent at once
+        private final long pollStart = System.nanoTime();
 
-        updateStatus(ThingStatus.UNKNOWN);
+        // Values of the channels which tell if the inverter is idle, null if not part of the responses
+        private volatile State dcPower;
+        private volatile State operatingStatus;
 
-        channelConfigs.add(new SecondGenerationChannelConfig("gridOutputPower", "td", 4, SmartHomeUnits.WATT));
-        channelConfigs.add(new SecondGenerationChannelConfig("yield_Day", "td", 7, SmartHomeUnits.WATT));
-        channelConfigs.add(new SecondGenerationChannelConfig("yield_Total", "td", 10, SmartHomeUnits.KILOWATT_HOUR));
-        channelConfigs.add(new SecondGenerationChannelConfig("operatingStatus", "td", 13, null));
-        channelConfigs.add(new SecondGenerationChannelConfig("gridVoltageL1", "td", 16, SmartHomeUnits.VOLT));
-        channelConfigs.add(new SecondGenerationChannelConfig("gridCurrentL1", "td", 19, SmartHomeUnits.AMPERE));
-        channelConfigs.add(new SecondGenerationChannelConfig("gridPowerL1", "td", 22, SmartHomeUnits.WATT));
-        channelConfigs.add(new SecondGenerationChannelConfig("gridVoltageL2", "td", 25, SmartHomeUnits.VOLT));
-        channelConfigs.add(new SecondGenerationChannelConfig("gridCurrentL2", "td", 28, SmartHomeUnits.AMPERE));
-        channelConfigs.add(new SecondGenerationChannelConfig("gridPowerL2", "td", 31, SmartHomeUnits.WATT));
-        channelConfigs.add(new SecondGenerationChannelConfig("gridVoltageL3", "td", 34, SmartHomeUnits.VOLT));
-        channelConfigs.add(new SecondGenerationChannelConfig("gridCurrentL3", "td", 37, SmartHomeUnits.AMPERE));
-        channelConfigs.add(new SecondGenerationChannelConfig("gridPowerL3", "td", 40, SmartHomeUnits.WATT));
-        channelConfigs.add(new SecondGenerationChannelConfig("dcPowerPV", "td", 43, SmartHomeUnits.WATT));
-        channelConfigs.add(new SecondGenerationChannelConfig("dc1Voltage", "td", 46, SmartHomeUnits.VOLT));
-        channelConfigs.add(new SecondGenerationChannelConfig("dc1Current", "td", 49, SmartHomeUnits.AMPERE));
-        channelConfigs.add(new SecondGenerationChannelConfig("dc1Power", "td", 52, SmartHomeUnits.WATT));
-        channelConfigs.add(new SecondGenerationChannelConfig("dc2Voltage", "td", 55, SmartHomeUnits.VOLT));
-        channelConfigs.add(new SecondGenerationChannelConfig("dc2Current", "td", 58, SmartHomeUnits.AMPERE));
-        channelConfigs.add(new SecondGenerationChannelConfig("dc2Power", "td", 61, SmartHomeUnits.WATT));
-        channelConfigs.add(new SecondGenerationChannelConfig("dc3Voltage", "td", 64, SmartHomeUnits.VOLT));
-        channelConfigs.add(new SecondGenerationChannelConfig("dc3Current", "td", 67, SmartHomeUnits.AMPERE));
-        channelConfigs.add(new SecondGenerationChannelConfig("dc3Power", "td", 70, SmartHomeUnits.WATT));
-
-        channelConfigsExt
-                .add(new SecondGenerationChannelConfig("aktHomeConsumptionSolar", "td", 73, SmartHomeUnits.WATT));
-        channelConfigsExt
-                .add(new SecondGenerationChannelConfig("aktHomeConsumptionBat", "td", 76, SmartHomeUnits.WATT));
-        channelConfigsExt.add(
-                new SecondGenerationChannelConfig("aktHomeConsumptionGrid", "td", 79, SmartHomeUnits.KILOWATT_HOUR));
-        channelConfigsExt
-                .add(new SecondGenerationChannelConfig("phaseSelHomeConsumpL1", "td", 82, SmartHomeUnits.WATT));
-        channelConfigsExt
-                .add(new SecondGenerationChannelConfig("phaseSelHomeConsumpL2", "td", 85, SmartHomeUnits.WATT));
-        channelConfigsExt
-                .add(new SecondGenerationChannelConfig("phaseSelHomeConsumpL3", "td", 88, SmartHomeUnits.WATT));
-        channelConfigsExt.add(new SecondGenerationChannelConfig("gridFreq", "td", 91, SmartHomeUnits.HERTZ));
-        channelConfigsExt.add(new SecondGenerationChannelConfig("gridCosPhi", "td", 94, SmartHomeUnits.DEGREE_ANGLE));
-        channelConfigsExt
-                .add(new SecondGenerationChannelConfig("homeConsumption_Day", "td", 97, SmartHomeUnits.KILOWATT_HOUR));
-        channelConfigsExt
-                .add(new SecondGenerationChannelConfig("ownConsumption_Day", "td", 100, SmartHomeUnits.KILOWATT_HOUR));
-        channelConfigsExt.add(new SecondGenerationChannelConfig("ownConsRate_Day", "td", 103, SmartHomeUnits.PERCENT));
-        channelConfigsExt
-                .add(new SecondGenerationChannelConfig("autonomyDegree_Day", "td", 106, SmartHomeUnits.PERCENT));
-        channelConfigsExt.add(
-                new SecondGenerationChannelConfig("homeConsumption_Total", "td", 109, SmartHomeUnits.KILOWATT_HOUR));
-        channelConfigsExt.add(
-                new SecondGenerationChannelConfig("ownConsumption_Total", "td", 112, SmartHomeUnits.KILOWATT_HOUR));
-        channelConfigsExt.add(new SecondGenerationChannelConfig("totalOperatingTime", "td", 115, SmartHomeUnits.HOUR));
-        channelConfigsExt.add(new SecondGenerationChannelConfig("current", "td", 118, SmartHomeUnits.AMPERE));
-        channelConfigsExt.add(new SecondGenerationChannelConfig("currentDir", "td", 121, SmartHomeUnits.AMPERE));
-        channelConfigsExt.add(new SecondGenerationChannelConfig("chargeCycles", "td", 124, null));
-        channelConfigsExt.add(new SecondGenerationChannelConfig("batteryTemperature", "td", 127, SIUnits.CELSIUS));
-        channelConfigsExt.add(new SecondGenerationChannelConfig("loginterval", "td", 130, SmartHomeUnits.MINUTE));
-        channelConfigsExt.add(new SecondGenerationChannelConfig("s0InPulseCnt", "td", 133, null));
-        channelConfigsExt
-                .add(new SecondGenerationChannelConfig("ownConsRate_Total", "td", 136, SmartHomeUnits.PERCENT));
-        channelConfigsExt
-                .add(new SecondGenerationChannelConfig("autonomyDegree_Total", "td", 139, SmartHomeUnits.PERCENT));
-
-        channelConfigsExtExt.add(new SecondGenerationChannelConfig("batteryVoltage", "td", 142, SmartHomeUnits.VOLT));
-        channelConfigsExtExt
-                .add(new SecondGenerationChannelConfig("batStateOfCharge", "td", 145, SmartHomeUnits.PERCENT));
-    }
+        RefreshCallback(int requests, Runnable completion) {
+            outstandingRequests = new AtomicInteger(requests);
+            this.completion = completion;
+        }
 
-    @SuppressWarnings("null")
-    private void refresh() throws Exception {
-        String dxsEntriesConfigFile = config.dxsEntriesCfgFile;
-        String dxsEntriesConfigFileExt = config.dxsEntriesCfgFileExt;
-        String dxsEntriesConfigFileExtExt = config.dxsEntriesCfgFileExtExt;
-
-        // Create dxsEntries arrays
-        String[] dxsEntries = new String[22];
-        String[] dxsEntriesExt = new String[22];
-        String[] dxsEntriesExtExt = new String[2];
-
-        // Fill dxsEntries with actual values
-        dxsEntries = SecondGenerationDxsEntriesCfg.getDxsEntriesCfg(dxsEntriesConfigFile);
-        dxsEntriesExt = SecondGenerationDxsEntriesCfgExt.getDxsEntriesCfgExt(dxsEntriesConfigFileExt);
-        dxsEntriesExtExt = SecondGenerationDxsEntriesCfgExtExt.getDxsEntriesCfgExtExt(dxsEntriesConfigFileExtExt);
-
-        // Catch data from actual DxsEntries
-        String jsonDxsEntriesResponse = callURL(config.url.toString() + "/api/dxs.json?dxsEntries=" + dxsEntries[0]
-                + "&dxsEntries=" + dxsEntries[1] + "&dxsEntries=" + dxsEntries[2] + "&dxsEntries=" + dxsEntries[3]
-                + "&dxsEntries=" + dxsEntries[4] + "&dxsEntries=" + dxsEntries[5] + "&dxsEntries=" + dxsEntries[6]
-                + "&dxsEntries=" + dxsEntries[7] + "&dxsEntries=" + dxsEntries[8] + "&dxsEntries=" + dxsEntries[9]
-                + "&dxsEntries=" + dxsEntries[10] + "&dxsEntries=" + dxsEntries[11] + "&dxsEntries=" + dxsEntries[12]
-                + "&dxsEntries=" + dxsEntries[13] + "&dxsEntries=" + dxsEntries[14] + "&dxsEntries=" + dxsEntries[15]
-                + "&dxsEntries=" + dxsEntries[16] + "&dxsEntries=" + dxsEntries[17] + "&dxsEntries=" + dxsEntries[18]
-                + "&dxsEntries=" + dxsEntries[19] + "&dxsEntries=" + dxsEntries[20] + "&dxsEntries=" + dxsEntries[21]
-                + "&dxsEntries=" + dxsEntries[22]);
-
-        String jsonDxsEntriesResponseExt = callURL(config.url.toString() + "/api/dxs.json?dxsEntries="
-                + dxsEntriesExt[0] + "&dxsEntries=" + dxsEntriesExt[1] + "&dxsEntries=" + dxsEntriesExt[2]
-                + "&dxsEntries=" + dxsEntriesExt[3] + "&dxsEntries=" + dxsEntriesExt[4] + "&dxsEntries="
-                + dxsEntriesExt[5] + "&dxsEntries=" + dxsEntriesExt[6] + "&dxsEntries=" + dxsEntriesExt[7]
-                + "&dxsEntries=" + dxsEntriesExt[8] + "&dxsEntries=" + dxsEntriesExt[9] + "&dxsEntries="
-                + dxsEntriesExt[10] + "&dxsEntries=" + dxsEntriesExt[11] + "&dxsEntries=" + dxsEntriesExt[12]
-                + "&dxsEntries=" + dxsEntriesExt[13] + "&dxsEntries=" + dxsEntriesExt[14] + "&dxsEntries="
-                + dxsEntriesExt[15] + "&dxsEntries=" + dxsEntriesExt[16] + "&dxsEntries=" + dxsEntriesExt[17]
-                + "&dxsEntries=" + dxsEntriesExt[18] + "&dxsEntries=" + dxsEntriesExt[19] + "&dxsEntries="
-                + dxsEntriesExt[20] + "&dxsEntries=" + dxsEntriesExt[21] + "&dxsEntries=" + dxsEntriesExt[22]);
-
-        String jsonDxsEntriesResponseExtExt = callURL(config.url.toString() + "/api/dxs.json?dxsEntries="
-                + dxsEntriesExtExt[0] + "&dxsEntries=" + dxsEntriesExtExt[1]);
-
-        // Get Gson object
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-
-        // Parse result
-        SecondGenerationDxsEntriesContainer dxsEntriesContainer = gson.fromJson(jsonDxsEntriesResponse,
-                SecondGenerationDxsEntriesContainer.class);
-        SecondGenerationDxsEntriesContainer dxsEntriesContainerExt = gson.fromJson(jsonDxsEntriesResponseExt,
-                SecondGenerationDxsEntriesContainer.class);
-        SecondGenerationDxsEntriesContainer dxsEntriesContainerExtExt = gson.fromJson(jsonDxsEntriesResponseExtExt,
-                SecondGenerationDxsEntriesContainer.class);
-
-        // Create channel-posts array's
-        String[] channelPosts = new String[23];
-        String[] channelPostsExt = new String[23];
-        String[] channelPostsExtExt = new String[2];
-
-        // Fill channelPosts with each item value
-        int channelPostsCounter = 0;
-        for (SecondGenerationDxsEntries dxsentries : dxsEntriesContainer.dxsEntries) {
-            channelPosts[channelPostsCounter] = dxsentries.getName();
-            channelPostsCounter++;
-        }
-
-        // Fill channelPostsExt with each item value
-        int channelPostsCounterExt = 0;
-        for (SecondGenerationDxsEntries dxsentriesExt : dxsEntriesContainerExt.dxsEntries) {
-            channelPostsExt[channelPostsCounterExt] = dxsentriesExt.getName();
-            channelPostsCounterExt++;
-        }
-
-        // Fill channelPostsExtExt with each item value
-        int channelPostsCounterExtExt = 0;
-        for (SecondGenerationDxsEntries dxsentriesExtExt : dxsEntriesContainerExtExt.dxsEntries) {
-            channelPostsExtExt[channelPostsCounterExtExt] = dxsentriesExtExt.getName();
-            channelPostsCounterExtExt++;
-        }
-
-        // Create and update actual values for each channelPost
-        int channelValuesCounter = 0;
-        for (SecondGenerationChannelConfig cConfig : channelConfigs) {
-            Channel channel = getThing().getChannel(cConfig.getId());
-            State state = getState(channelPosts[channelValuesCounter], cConfig.unit);
-
-            // Update the channel
-            if (state != null) {
-                updateState(channel.getUID().getId(), state);
-                channelValuesCounter++;
+        @Override
+        public void completed(InputStream content, int length) throws IOException {
+            pollingMetrics.recordSince(PollingMetrics.Phase.REQUEST, pollStart);
+            pollingMetrics.recordResponse(length);
+            long parseStart = System.nanoTime();
+            // Time spent in the channel updates, which are called while the response is parsed
+            long[] updateNanos = new long[1];
+            try {
+                SecondGenerationDxsEntriesReader.read(content, channelIndex, (entry, state) -> {
+                    long updateStart = System.nanoTime();
+                    update(entry, state);
+                    updateNanos[0] += System.nanoTime() - updateStart;
+                });
+            } catch (IOException | RuntimeException e) {
+                pollingMetrics.recordFailure(e);
+                failure.compareAndSet(null, e);
             }
+            pollingMetrics.record(PollingMetrics.Phase.PARSE, System.nanoTime() - parseStart - updateNanos[0]);
+            pollingMetrics.record(PollingMetrics.Phase.UPDATE, updateNanos[0]);
+            requestCompleted();
         }
 
-        // Create and update actual values for each channelPostExt
-        int channelValuesCounterExt = 0;
-        for (SecondGenerationChannelConfig cConfig : channelConfigsExt) {
-            Channel channel = getThing().getChannel(cConfig.getId());
-            State state = getState(channelPostsExt[channelValuesCounterExt], cConfig.unit);
-
-            // Update the channel
-            if (state != null) {
-                updateState(channel.getUID().getId(), state);
-                channelValuesCounterExt++;
+        @Override
+        public void failed(Throwable requestFailure) {
+            if (requestFailure instanceof SecondGenerationHttpHelper.ResponseStatusException) {
+                pollingMetrics
+                        .recordStatus(((SecondGenerationHttpHelper.ResponseStatusException) requestFailure).status);
+            } else {
+                pollingMetrics.recordFailure(requestFailure);
             }
+            failure.compareAndSet(null, requestFailure);
+            requestCompleted();
         }
 
-        // Create and update actual values for each channelPostExtExt
-        int channelValuesCounterExtExt = 0;
-        for (SecondGenerationChannelConfig cConfig : channelConfigsExtExt) {
-            Channel channel = getThing().getChannel(cConfig.getId());
-            State state = getState(channelPostsExtExt[channelValuesCounterExtExt], cConfig.unit);
-
-            // Update the channel
-            if (state != null) {
-                updateState(channel.getUID().getId(), state);
-                channelValuesCounterExtExt++;
+        private void update(SecondGenerationChannelIndex.Entry entry, State state) {
+            updateChannel(entry, state);
+            if (CHANNEL_DCPOWERPV.equals(entry.channelId)) {
+                dcPower = state;
+            } else if (CHANNEL_OPERATING_STATUS.equals(entry.channelId)) {
+                operatingStatus = state;
             }
         }
-    }
 
-    @SuppressWarnings("null")
-    public static String callURL(String myURL) {
-        StringBuilder sb = new StringBuilder();
-        URLConnection urlConn = null;
-        InputStreamReader in = null;
-        try {
-            URL url = new URL(myURL);
-            urlConn = url.openConnection();
-            if (urlConn != null) {
-                urlConn.setReadTimeout(60 * 1000);
+        /**
+         * @return true if the inverter is switched off or does not produce power, null if the responses do not tell
+         */
+        private Boolean isIdle() {
+            Boolean idle = null;
+            State status = operatingStatus;
+            if (status instanceof StringType) {
+                idle = AdaptiveRefreshInterval.isIdleStatus(status.toString());
             }
-            if (urlConn != null && urlConn.getInputStream() != null) {
-                in = new InputStreamReader(urlConn.getInputStream(), Charset.defaultCharset());
-                BufferedReader bufferedReader = new BufferedReader(in);
-                if (bufferedReader != null) {
-                    int cp;
-                    while ((cp = bufferedReader.read()) != -1) {
-                        sb.append((char) cp);
-                    }
-                    bufferedReader.close();
-                }
+            State power = dcPower;
+            if (power instanceof QuantityType) {
+                idle = Boolean.TRUE.equals(idle)
+                        || AdaptiveRefreshInterval.isIdlePower(((QuantityType<?>) power).doubleValue());
             }
-            in.close();
-        } catch (Exception e) {
-            throw new RuntimeException("Exception while calling URL:" + myURL, e);
+            return idle;
         }
-        return sb.toString();
-    }
 
-    private State getState(String value, Unit<?> unit) {
-        if (unit == null) {
-            return new StringType(value);
-        } else {
-            try {
-                return new QuantityType<>(new BigDecimal(value), unit);
-            } catch (NumberFormatException e) {
-                logger.debug("Error parsing value '{}'", value, e);
-                return UnDefType.UNDEF;
+        private void requestCompleted() {
+            if (outstandingRequests.decrementAndGet() == 0) {
+                adaptiveInterval.update(failure.get() == null ? isIdle() : null);
+                refreshCompleted(failure.get());
+                pollingMetrics.pollCompleted(pollStart);
+                pollingMetrics.publish(SecondGenerationHandler.this::isLinked,
+                        SecondGenerationHandler.this::updateState);
+                completion.run();
             }
         }
     }
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.openhab.binding.internal.kostal.inverter.secondgeneration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpVersion;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * The {@link SecondGenerationHttpHelper} is handling the http communication with the inverter
+ * over the shared http client of the binding.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+final class SecondGenerationHttpHelper {
+
+    private SecondGenerationHttpHelper() {
+    }
+
+    static final String USER_AGENT = "Mozilla/5.0";
+
+    // Upper bound for a complete request, a hung inverter must not block a thread or a poll for longer
+    static final long REQUEST_TIMEOUT_SECONDS = 10;
+
+    // Upper bound for a buffered dxs.json response
+    private static final int MAX_RESPONSE_LENGTH = 2 * 1024 * 1024;
+
+    /**
+     * Callback for the result of an asynchronous request
+     */
+    interface ResponseHandler {
+        /**
+         * Called with the content of a successful response
+         *
+         * @param content the response body, it is only valid during the call
+         * @param length  the length of the response body
+         */
+        void completed(InputStream content, int length) throws IOException;
+
+        /**
+         * Called if the request failed or the inverter answered with an error status
+         */
+        void failed(Throwable failure);
+    }
+
+    /**
+     * Signals a response with an error status
+     */
+    static final class ResponseStatusException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ResponseStatusException(int status, String url) {
+            super("Unexpected response status " + status + " from " + url);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Helper function to execute a HTTP get request asynchronously
+     *
+     * @param httpClient httpClient to use for communication
+     * @param url        complete URL of the resource to get
+     * @param handler    handler called on completion of the request
+     */
+    static void executeHttpGetAsync(HttpClient httpClient, String url, ResponseHandler handler) {
+        Request request = newRequest(httpClient, url, HttpMethod.GET, "text/plain");
+        request.send(new BufferingResponseListener(MAX_RESPONSE_LENGTH) {
+            @Override
+            public void onComplete(Result result) {
+                if (result.isFailed()) {
+                    handler.failed(result.getFailure());
+                    return;
+                }
+                int status = result.getResponse().getStatus();
+                if (status >= 400) {
+                    handler.failed(new ResponseStatusException(status, url));
+                    return;
+                }
+                try (InputStream content = getContentAsInputStream()) {
+                    // The content is buffered, so that all of it is available
+                    handler.completed(content, content.available());
+                } catch (IOException | RuntimeException e) {
+                    handler.failed(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Helper function to execute a HTTP get request
+     *
+     * @param httpClient httpClient to use for communication
+     * @param url        complete URL of the resource to get
+     * @return the HTTP response for the created get request
+     * @throws ExecutionException   Error during the execution of the http request
+     * @throws TimeoutException     Connection timed out
+     * @throws InterruptedException Connection interrupted
+     */
+    static ContentResponse executeHttpGet(HttpClient httpClient, String url)
+            throws InterruptedException, TimeoutException, ExecutionException {
+        return newRequest(httpClient, url, HttpMethod.GET, "text/plain").send();
+    }
+
+    /**
+     * Helper function to execute a HTTP post request
+     *
+     * @param httpClient  httpClient to use for communication
+     * @param url         complete URL of the resource to post to
+     * @param contentType content type of the posted data
+     * @param content     the content to post
+     * @return the HTTP response for the created post request
+     * @throws ExecutionException   Error during the execution of the http request
+     * @throws TimeoutException     Connection timed out
+     * @throws InterruptedException Connection interrupted
+     */
+    static ContentResponse executeHttpPost(HttpClient httpClient, String url, String contentType, String content)
+            throws InterruptedException, TimeoutException, ExecutionException {
+        Request request = newRequest(httpClient, url, HttpMethod.POST, contentType);
+        request.content(new StringContentProvider(contentType, content, StandardCharsets.UTF_8));
+        return request.send();
+    }
+
+    /**
+     * Reads the status code the inverter reports in the body of its JSON answers
+     *
+     * @param content the response body
+     * @return the value of status.code, 0 if the answer does not report a status
+     */
+    static int getStatusCode(String content) {
+        try {
+            JsonElement answer = new JsonParser().parse(content);
+            if (!answer.isJsonObject()) {
+                return 0;
+            }
+            JsonElement status = answer.getAsJsonObject().get("status");
+            if (status == null || !status.isJsonObject()) {
+                return 0;
+            }
+            JsonElement code = status.getAsJsonObject().get("code");
+            return code == null || !code.isJsonPrimitive() ? 0 : code.getAsInt();
+        } catch (JsonParseException | NumberFormatException e) {
+            // Answer without JSON content
+            return 0;
+        }
+    }
+
+    private static Request newRequest(HttpClient httpClient, String url, HttpMethod method, String contentType) {
+        return httpClient.newRequest(url).agent(USER_AGENT).version(HttpVersion.HTTP_1_1).method(method)
+                .header(HttpHeader.ACCEPT_LANGUAGE, "en-US,en;q=0.9,sv;q=0.8")
+                .header(HttpHeader.CONTENT_TYPE, contentType).timeout(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
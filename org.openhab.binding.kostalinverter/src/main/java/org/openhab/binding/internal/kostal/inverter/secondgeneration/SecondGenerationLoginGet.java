@@ -13,10 +13,8 @@
 
 package org.openhab.binding.internal.kostal.inverter.secondgeneration;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -25,35 +23,20 @@ import com.google.gson.JsonParser;
 /**
  *
  * @author Örjan Backsell - Initial contribution Piko1020, Piko New Generation
+ * @author Örjan Backsell - Shared Jetty HttpClient
  */
 
 public class SecondGenerationLoginGet {
-    static final String USER_AGENT = "Mozilla/5.0";
-
     // HTTP Sending Get Login Request
-    public static String[] loginGet(String url, String username, String password) throws Exception {
+    public static String[] loginGet(HttpClient httpClient, String url, String username, String password)
+            throws Exception {
         String code = "";
         String salt = "";
         String sessionId = "";
         String[] getResponse = new String[2];
 
-        URL obj = new URL(url);
-
-        HttpURLConnection con = (HttpURLConnection) obj.openConnection();
-        con.setRequestMethod("GET");
-        con.setRequestProperty("User-Agent", USER_AGENT);
-        con.setRequestProperty("Accept-Language", "en-US,en;q=0.9,sv;q=0.8");
-        con.setRequestProperty("Content-Type", "text/plain");
-        con.connect();
-
-        BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-        String output;
-        StringBuffer response = new StringBuffer();
-
-        while ((output = in.readLine()) != null) {
-            response.append(output);
-        }
-        in.close();
+        ContentResponse contentResponse = SecondGenerationHttpHelper.executeHttpGet(httpClient, url);
+        StringBuffer response = new StringBuffer(contentResponse.getContentAsString());
 
         int sessionStart = response.indexOf("session");
         response.insert(sessionStart + 9, '[');
@@ -13,31 +13,22 @@
 
 package org.openhab.binding.internal.kostal.inverter.secondgeneration;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.security.MessageDigest;
 import java.util.Base64;
 
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+
 /**
  *
  * @author Örjan Backsell - Initial contribution Piko1020, Piko New Generation
+ * @author Örjan Backsell - Session reuse and shared Jetty HttpClient
  */
 
 public class SecondGenerationLoginPost {
-    static final String USER_AGENT = "Mozilla/5.0";
-
-    // HTTP Sending Post Request
-    static int loginPost(String url, String username, String password, String salt) throws Exception {
-        URL objLoginPost = new URL(url);
-        HttpURLConnection conLoginPost = (HttpURLConnection) objLoginPost.openConnection();
-        conLoginPost.setRequestMethod("POST");
-        conLoginPost.setRequestProperty("User-Agent", USER_AGENT);
-        conLoginPost.setRequestProperty("Accept-Language", "en-US,en;q=0.9,sv;q=0.8");
-        conLoginPost.setRequestProperty("Content-Type", "text/plain");
-
+    // HTTP Sending Post Request, returns true if the inverter has accepted the login
+    static boolean loginPost(HttpClient httpClient, String url, String username, String password, String salt)
+            throws Exception {
         String input = new StringBuffer(password).append(salt).toString();
         MessageDigest mDigest = MessageDigest.getInstance("SHA1");
 
@@ -51,23 +42,14 @@ public class SecondGenerationLoginPost {
         String postJsonData = "{\"mode\":1,\"userId\":\"" + username + "\",\"pwh\":\"" + pwh + "\"}";
 
         // Send post request
-        conLoginPost.setDoOutput(true);
-        DataOutputStream wr = new DataOutputStream(conLoginPost.getOutputStream());
-        wr.writeBytes(postJsonData);
-        wr.flush();
-        wr.close();
-
-        int responseCode = conLoginPost.getResponseCode();
-
-        BufferedReader in = new BufferedReader(new InputStreamReader(conLoginPost.getInputStream()));
-        String output;
-        StringBuffer response = new StringBuffer();
-
-        while ((output = in.readLine()) != null) {
-            response.append(output);
+        ContentResponse response = SecondGenerationHttpHelper.executeHttpPost(httpClient, url, "text/plain",
+                postJsonData);
+        int responseCode = response.getStatus();
+        if (responseCode >= 400) {
+            return false;
         }
-        in.close();
 
-        return responseCode;
+        // The inverter may refuse the login with status 200 and a fault code in the answer
+        return SecondGenerationHttpHelper.getStatusCode(response.getContentAsString()) == 0;
     }
 }
@@ -13,57 +13,74 @@
 
 package org.openhab.binding.internal.kostal.inverter.secondgeneration;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
 
 /**
  *
  * @author Örjan Backsell - Initial contribution Piko1020, Piko New Generation
+ * @author Örjan Backsell - Coalesced writes and shared Jetty HttpClient
  */
 
 public class SecondGenerationPost {
-    static final String USER_AGENT = "Mozilla/5.0";
-
-    // HTTP Sending Get Login Request
-    static int postValue(String url, String sessionId, String dxsId, String value) throws Exception {
-        URL obj = new URL(url);
+    private static final Gson GSON = new Gson();
 
-        HttpURLConnection con = (HttpURLConnection) obj.openConnection();
-        con.setRequestMethod("POST");
-        con.setRequestProperty("User-Agent", USER_AGENT);
-        con.setRequestProperty("Accept-Language", "en-US,en;q=0.9,sv;q=0.8");
-        con.setRequestProperty("Content-Type", "application/json");
-
-        String postJsonData = "";
-
-        if (dxsId.contentEquals("16777984")) {
-            // There must be an " around the value regarding inverterName
-            postJsonData = "{\"dxsEntries\":[{\"dxsId\":" + dxsId + ",\"value\":\"" + value + "\"}]}";
-        } else {
-            // This is for all other values
-            postJsonData = "{\"dxsEntries\":[{\"dxsId\":" + dxsId + ",\"value\":" + value + "}]}";
+    // HTTP Sending Post Request with all given dxsEntries in one body
+    static SecondGenerationWriteResult postValues(HttpClient httpClient, String url, Map<String, JsonPrimitive> values)
+            throws Exception {
+        ContentResponse response = SecondGenerationHttpHelper.executeHttpPost(httpClient, url, "application/json",
+                getPostJsonData(values));
+        int responseCode = response.getStatus();
+        if (responseCode >= 400) {
+            // No content to read, e.g. the session has been rejected
+            return new SecondGenerationWriteResult(responseCode, 0, new HashSet<>());
         }
-        // Send post request
-        con.setDoOutput(true);
-        DataOutputStream wr = new DataOutputStream(con.getOutputStream());
-        wr.writeBytes(postJsonData);
-        wr.flush();
-        wr.close();
-
-        int responseCode = con.getResponseCode();
 
-        BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-        String output;
-        StringBuffer response = new StringBuffer();
+        String content = response.getContentAsString();
+        return new SecondGenerationWriteResult(responseCode, SecondGenerationHttpHelper.getStatusCode(content),
+                getAcceptedDxsIds(content, values));
+    }
 
-        while ((output = in.readLine()) != null) {
-            response.append(output);
+    static String getPostJsonData(Map<String, JsonPrimitive> values) {
+        JsonArray dxsEntries = new JsonArray();
+        for (Map.Entry<String, JsonPrimitive> value : values.entrySet()) {
+            JsonObject dxsEntry = new JsonObject();
+            dxsEntry.addProperty("dxsId", Long.valueOf(value.getKey()));
+            dxsEntry.add("value", value.getValue());
+            dxsEntries.add(dxsEntry);
         }
-        in.close();
+        JsonObject postJsonData = new JsonObject();
+        postJsonData.add("dxsEntries", dxsEntries);
+        return postJsonData.toString();
+    }
 
-        return responseCode;
+    // The inverter echoes the dxsEntries it has taken over, values it does not list are regarded as rejected
+    private static Set<String> getAcceptedDxsIds(String response, Map<String, JsonPrimitive> values) {
+        Set<String> accepted = new HashSet<>();
+        SecondGenerationDxsEntriesContainer container = null;
+        try {
+            container = GSON.fromJson(response, SecondGenerationDxsEntriesContainer.class);
+        } catch (JsonParseException e) {
+            // Answer without JSON content
+        }
+        if (container == null || container.dxsEntries == null) {
+            return accepted;
+        }
+        for (SecondGenerationDxsEntries dxsEntry : container.dxsEntries) {
+            if (values.containsKey(dxsEntry.getId())) {
+                accepted.add(dxsEntry.getId());
+            }
+        }
+        return accepted;
     }
 }
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.openhab.binding.internal.kostal.inverter.secondgeneration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@link SecondGenerationQueryPlanner} builds the dxs.json requests for a set of dxsIds.
+ * The dxsIds are merged into as few requests as the limits of the inverter allow.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class SecondGenerationQueryPlanner {
+
+    // Number of dxsEntries per request if the thing configuration does not state otherwise
+    static final int DEFAULT_MAX_DXS_ENTRIES_PER_REQUEST = 50;
+
+    // Keep the request line well below the limits of the embedded web server
+    static final int MAX_URL_LENGTH = 2000;
+
+    private static final String DXS_PATH = "/api/dxs.json";
+    private static final String DXS_PARAMETER = "dxsEntries=";
+
+    private SecondGenerationQueryPlanner() {
+    }
+
+    /**
+     * Builds the request URLs to read all given dxsIds.
+     *
+     * @param url the base URL of the inverter
+     * @param dxsIds the dxsIds to read
+     * @param maxDxsEntriesPerRequest the maximum number of dxsEntries per request, the default is used if not
+     *            positive
+     * @return the request URLs, empty if there is nothing to read
+     */
+    public static List<String> planRequests(String url, Collection<String> dxsIds, int maxDxsEntriesPerRequest) {
+        if (dxsIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int maxEntries = maxDxsEntriesPerRequest > 0 ? maxDxsEntriesPerRequest : DEFAULT_MAX_DXS_ENTRIES_PER_REQUEST;
+
+        List<String> requests = new ArrayList<>();
+        StringBuilder request = new StringBuilder(MAX_URL_LENGTH);
+        int entries = 0;
+        for (String dxsId : dxsIds) {
+            boolean full = entries >= maxEntries
+                    || request.length() + DXS_PARAMETER.length() + dxsId.length() + 1 > MAX_URL_LENGTH;
+            if (entries > 0 && full) {
+                requests.add(request.toString());
+                request.setLength(0);
+                entries = 0;
+            }
+            if (entries == 0) {
+                request.append(url).append(DXS_PATH).append('?');
+            } else {
+                request.append('&');
+            }
+            request.append(DXS_PARAMETER).append(dxsId);
+            entries++;
+        }
+        requests.add(request.toString());
+        return Collections.unmodifiableList(requests);
+    }
+}
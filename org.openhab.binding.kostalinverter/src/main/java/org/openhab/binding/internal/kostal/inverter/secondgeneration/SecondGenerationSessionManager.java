@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.openhab.binding.internal.kostal.inverter.secondgeneration;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.HttpClient;
+
+import com.google.gson.JsonPrimitive;
+
+/**
+ * The {@link SecondGenerationSessionManager} keeps the login session of one inverter, so that
+ * configuration changes do not have to perform the login handshake for every single write.
+ * The session is reused until it runs into its expiry or the inverter rejects it.
+ *
+ * @author Örjan Backsell - Initial contribution (login, as SecondGenerationConfigurationHandler.java)
+ * @author Örjan Backsell - Session reuse
+ */
+public class SecondGenerationSessionManager {
+
+    // The inverter drops idle sessions, so a cached session is only trusted for this period after its last use
+    static final long SESSION_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    // Fault code returned when the inverter refuses the login request
+    static final int LOGIN_FAULT_CODE = 6;
+
+    private final HttpClient httpClient;
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private String sessionId;
+    private long sessionExpiry;
+
+    public SecondGenerationSessionManager(HttpClient httpClient, String url, String username, String password) {
+        this.httpClient = httpClient;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Writes values to the inverter by reusing the cached session. The login is repeated only if there is no
+     * valid session or the inverter answers with an authentication failure.
+     *
+     * @param values the new values keyed by their dxsId, all of them are sent in one request
+     * @return the result of the write, its response code is {@link #LOGIN_FAULT_CODE} if the login failed
+     */
+    public synchronized SecondGenerationWriteResult writeValues(Map<String, JsonPrimitive> values) throws Exception {
+        boolean freshSession = !isSessionValid();
+        if (freshSession && !login()) {
+            return loginFailed();
+        }
+
+        SecondGenerationWriteResult result = post(values);
+        if (isAuthFailure(result) && !freshSession) {
+            // The cached session was dropped by the inverter (reboot, timeout), log in again and retry once
+            invalidate();
+            if (!login()) {
+                return loginFailed();
+            }
+            result = post(values);
+        }
+
+        if (isAuthFailure(result)) {
+            invalidate();
+        } else {
+            sessionExpiry = System.currentTimeMillis() + SESSION_TIMEOUT_MILLIS;
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the cached session, the next write performs a new login.
+     */
+    public synchronized void invalidate() {
+        sessionId = null;
+        sessionExpiry = 0;
+    }
+
+    private boolean isSessionValid() {
+        return sessionId != null && System.currentTimeMillis() < sessionExpiry;
+    }
+
+    private boolean login() throws Exception {
+        String urlLogin = url + "/api/login.json";
+        String[] getResponse = SecondGenerationLoginGet.loginGet(httpClient, urlLogin, username, password);
+        if (getResponse[1] == null) {
+            // Only the fault code has been returned
+            return false;
+        }
+        String salt = getResponse[0];
+        String newSessionId = getResponse[1];
+
+        String urlLoginPost = urlLogin + "?sessionId=" + newSessionId;
+        if (!SecondGenerationLoginPost.loginPost(httpClient, urlLoginPost, username, password, salt)) {
+            return false;
+        }
+
+        sessionId = newSessionId;
+        sessionExpiry = System.currentTimeMillis() + SESSION_TIMEOUT_MILLIS;
+        return true;
+    }
+
+    private SecondGenerationWriteResult post(Map<String, JsonPrimitive> values) throws Exception {
+        String urlDxsIdPost = url + "/api/dxs.json?sessionId=" + sessionId;
+        return SecondGenerationPost.postValues(httpClient, urlDxsIdPost, values);
+    }
+
+    private static SecondGenerationWriteResult loginFailed() {
+        return new SecondGenerationWriteResult(LOGIN_FAULT_CODE, 0, Collections.emptySet());
+    }
+
+    // The inverter rejects a dropped session either with an HTTP error or with a fault code in the answer
+    private static boolean isAuthFailure(SecondGenerationWriteResult result) {
+        int responseCode = result.getResponseCode();
+        return responseCode == 401 || responseCode == 403 || result.getStatusCode() != 0;
+    }
+}
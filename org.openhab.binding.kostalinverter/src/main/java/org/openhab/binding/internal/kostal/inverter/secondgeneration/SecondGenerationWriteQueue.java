@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.openhab.binding.internal.kostal.inverter.secondgeneration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.types.Command;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonPrimitive;
+
+/**
+ * The {@link SecondGenerationWriteQueue} collects the configuration commands arriving within a short window
+ * and sends them to the inverter as one POST with multiple dxsEntries.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class SecondGenerationWriteQueue {
+
+    // Commands arriving within this period after the first queued command share one request
+    static final long COALESCE_WINDOW_MILLIS = 500;
+
+    /**
+     * Receives the outcome of each queued command.
+     */
+    public interface WriteListener {
+        void writeCompleted(ChannelUID channelUID, Command command, boolean success);
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(SecondGenerationWriteQueue.class);
+
+    private final ScheduledExecutorService scheduler;
+    private final SecondGenerationSessionManager sessionManager;
+    private final WriteListener listener;
+
+    // Pending writes keyed by channel in the order of their last command, a later command for the same channel
+    // replaces the earlier one. Channels may share a dxsId (e.g. smartBatteryControl and smartBatteryControl_Text),
+    // then the last command wins and the other channels are told that their command was not written
+    private final Map<ChannelUID, PendingWrite> pendingWrites = new LinkedHashMap<>();
+    private ScheduledFuture<?> flushJob;
+
+    public SecondGenerationWriteQueue(ScheduledExecutorService scheduler,
+            SecondGenerationSessionManager sessionManager, WriteListener listener) {
+        this.scheduler = scheduler;
+        this.sessionManager = sessionManager;
+        this.listener = listener;
+    }
+
+    /**
+     * Queues a value for the next request to the inverter.
+     *
+     * @param channelUID the channel which received the command
+     * @param dxsId the dxsId to write
+     * @param value the value as sent to the inverter
+     * @param command the original command, handed back to the {@link WriteListener}
+     */
+    public synchronized void enqueue(ChannelUID channelUID, String dxsId, JsonPrimitive value, Command command) {
+        pendingWrites.remove(channelUID);
+        pendingWrites.put(channelUID, new PendingWrite(channelUID, dxsId, value, command));
+        if (flushJob == null) {
+            flushJob = scheduler.schedule(this::flush, COALESCE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Drops all pending writes.
+     */
+    public synchronized void dispose() {
+        if (flushJob != null) {
+            flushJob.cancel(false);
+            flushJob = null;
+        }
+        pendingWrites.clear();
+    }
+
+    private void flush() {
+        Map<ChannelUID, PendingWrite> writes;
+        synchronized (this) {
+            writes = new LinkedHashMap<>(pendingWrites);
+            pendingWrites.clear();
+            flushJob = null;
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        // The last command for a dxsId is written
+        Map<String, PendingWrite> lastWrites = new LinkedHashMap<>();
+        for (PendingWrite write : writes.values()) {
+            lastWrites.put(write.dxsId, write);
+        }
+        Map<String, JsonPrimitive> values = new LinkedHashMap<>();
+        for (Map.Entry<String, PendingWrite> write : lastWrites.entrySet()) {
+            values.put(write.getKey(), write.getValue().value);
+        }
+
+        SecondGenerationWriteResult result = null;
+        try {
+            result = sessionManager.writeValues(values);
+        } catch (Exception e) {
+            logger.error("Unexpected error in SecondGenerationSessionManager.writeValues, dxsIds {} !",
+                    values.keySet(), e);
+        }
+
+        for (PendingWrite write : writes.values()) {
+            boolean superseded = lastWrites.get(write.dxsId) != write;
+            if (superseded) {
+                logger.debug("Command {} for channel {} superseded by a later command for dxsId {}", write.command,
+                        write.channelUID, write.dxsId);
+            }
+            boolean success = !superseded && result != null && result.isAccepted(write.dxsId);
+            listener.writeCompleted(write.channelUID, write.command, success);
+        }
+    }
+
+    private static class PendingWrite {
+        final ChannelUID channelUID;
+        final String dxsId;
+        final JsonPrimitive value;
+        final Command command;
+
+        PendingWrite(ChannelUID channelUID, String dxsId, JsonPrimitive value, Command command) {
+            this.channelUID = channelUID;
+            this.dxsId = dxsId;
+            this.value = value;
+            this.command = command;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.openhab.binding.internal.kostal.inverter.secondgeneration;
+
+import java.util.Set;
+
+/**
+ * The {@link SecondGenerationWriteResult} holds the outcome of one POST of dxsEntries to the inverter.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+public class SecondGenerationWriteResult {
+    private final int responseCode;
+    private final int statusCode;
+    private final Set<String> acceptedDxsIds;
+
+    /**
+     * @param responseCode   the HTTP status of the answer
+     * @param statusCode     the status code reported in the JSON answer, 0 if the inverter reports no fault
+     * @param acceptedDxsIds the dxsIds echoed by the inverter
+     */
+    public SecondGenerationWriteResult(int responseCode, int statusCode, Set<String> acceptedDxsIds) {
+        this.responseCode = responseCode;
+        this.statusCode = statusCode;
+        this.acceptedDxsIds = acceptedDxsIds;
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return true if the inverter has taken over the value of the given dxsId
+     */
+    public boolean isAccepted(String dxsId) {
+        return responseCode == 200 && statusCode == 0 && acceptedDxsIds.contains(dxsId);
+    }
+}
@@ -16,10 +16,20 @@ package org.openhab.binding.internal.kostal.inverter.thirdgeneration;
  * The {@link ThirdGenerationConfiguration} class contains fields mapping thing configuration parameters.
  *
  * @author René Stakemeier - Initial contribution
+ * @author Örjan Backsell - Refresh tiers, state filter, idle refresh and journal parameters
  */
 public class ThirdGenerationConfiguration {
 
     public String url;
     public String userPassword;
     public int refreshInternalInSeconds;
+    public int batteryRefreshIntervalInSeconds;
+    public int statisticsRefreshIntervalInSeconds;
+    public int eventsRefreshIntervalInSeconds;
+    public double absoluteDeadband;
+    public double relativeDeadbandPercent;
+    public int maxSilenceInSeconds;
+    public int maxIdleRefreshIntervalInSeconds;
+    public boolean journal;
+    public int journalRetentionInDays;
 }
@@ -14,11 +14,15 @@ package org.openhab.binding.internal.kostal.inverter.thirdgeneration;
 
 import static org.openhab.binding.internal.kostal.inverter.thirdgeneration.ThirdGenerationBindingConstants.*;
 
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 import javax.crypto.Mac;
@@ -31,12 +35,32 @@ import javax.crypto.spec.SecretKeySpec;
  * handlers.
  *
  * @author René Stakemeier - Initial contribution
+ * @author Örjan Backsell - PBKDF2 cache
  */
 final class ThirdGenerationEncryptionHelper {
 
     private ThirdGenerationEncryptionHelper() {
     }
 
+    // Number of derived passwords kept in memory, each device uses one entry as long as its salt does not change
+    static final int PBKDF2_CACHE_SIZE = 16;
+
+    // Derived passwords, PBKDF2 is only calculated again if the device sends a new salt or round count
+    private static final Map<PBKDF2CacheKey, byte[]> PBKDF2_CACHE = new LinkedHashMap<PBKDF2CacheKey, byte[]>(
+            PBKDF2_CACHE_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PBKDF2CacheKey, byte[]> eldest) {
+            return size() > PBKDF2_CACHE_SIZE;
+        }
+    };
+
+    // Instances of the algorithms are not thread safe, but expensive to look up, so each thread keeps its own
+    private static final ThreadLocal<Mac> HMAC_SHA256 = new ThreadLocal<>();
+    private static final ThreadLocal<MessageDigest> SHA256 = new ThreadLocal<>();
+    private static final ThreadLocal<SecretKeyFactory> PBKDF2 = new ThreadLocal<>();
+
     /**
      * This method generates the HMACSha256 encrypted value of the given value
      *
@@ -48,10 +72,29 @@ final class ThirdGenerationEncryptionHelper {
      */
     static byte[] getHMACSha256(byte[] password, String valueToEncrypt)
             throws InvalidKeyException, NoSuchAlgorithmException {
-        SecretKeySpec signingKey = new SecretKeySpec(password, HMAC_SHA256_ALGORITHM);
-        Mac mac = Mac.getInstance(HMAC_SHA256_ALGORITHM);
-        mac.init(signingKey);
-        mac.update(valueToEncrypt.getBytes());
+        return getHMACSha256(password, valueToEncrypt.getBytes());
+    }
+
+    /**
+     * This method generates the HMACSha256 encrypted value of the concatenation of the given values
+     *
+     * @param password        Password used for encryption
+     * @param valuesToEncrypt values to encrypt
+     * @return encrypted value
+     * @throws InvalidKeyException      thrown if the key generated from the password is invalid
+     * @throws NoSuchAlgorithmException thrown if HMAC SHA 256 is not supported
+     */
+    static byte[] getHMACSha256(byte[] password, byte[]... valuesToEncrypt)
+            throws InvalidKeyException, NoSuchAlgorithmException {
+        Mac mac = HMAC_SHA256.get();
+        if (mac == null) {
+            mac = Mac.getInstance(HMAC_SHA256_ALGORITHM);
+            HMAC_SHA256.set(mac);
+        }
+        mac.init(new SecretKeySpec(password, HMAC_SHA256_ALGORITHM));
+        for (byte[] valueToEncrypt : valuesToEncrypt) {
+            mac.update(valueToEncrypt);
+        }
         return mac.doFinal();
     }
 
@@ -74,6 +117,9 @@ final class ThirdGenerationEncryptionHelper {
     /**
      * Create the PBKDF2 hash
      *
+     * The result is cached, as long as the device sends the same salt and round count for the same password the
+     * expensive derivation is not repeated.
+     *
      * @param password password
      * @param salt     salt
      * @param rounds   rounds
@@ -83,9 +129,29 @@ final class ThirdGenerationEncryptionHelper {
      */
     static byte[] getPBKDF2Hash(String password, byte[] salt, int rounds)
             throws NoSuchAlgorithmException, InvalidKeySpecException {
-        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, rounds, 256);
-        SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        return skf.generateSecret(spec).getEncoded();
+        PBKDF2CacheKey key = new PBKDF2CacheKey(getSha256Hash(password.getBytes(StandardCharsets.UTF_8)), salt,
+                rounds);
+        byte[] hash;
+        synchronized (PBKDF2_CACHE) {
+            hash = PBKDF2_CACHE.get(key);
+        }
+        if (hash == null) {
+            SecretKeyFactory skf = PBKDF2.get();
+            if (skf == null) {
+                skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+                PBKDF2.set(skf);
+            }
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, rounds, 256);
+            try {
+                hash = skf.generateSecret(spec).getEncoded();
+            } finally {
+                spec.clearPassword();
+            }
+            synchronized (PBKDF2_CACHE) {
+                PBKDF2_CACHE.put(key, hash);
+            }
+        }
+        return hash.clone();
     }
 
     /**
@@ -96,7 +162,12 @@ final class ThirdGenerationEncryptionHelper {
      * @throws NoSuchAlgorithmException if SHA256 is not supported
      */
     static byte[] getSha256Hash(byte[] valueToHash) throws NoSuchAlgorithmException {
-        return MessageDigest.getInstance(SHA_256_HASH).digest(valueToHash);
+        MessageDigest digest = SHA256.get();
+        if (digest == null) {
+            digest = MessageDigest.getInstance(SHA_256_HASH);
+            SHA256.set(digest);
+        }
+        return digest.digest(valueToHash);
     }
 
     /**
@@ -118,4 +189,37 @@ final class ThirdGenerationEncryptionHelper {
         // return the base64 encoded value of the random words
         return Base64.getMimeEncoder().encodeToString(nonceArray);
     }
+
+    /**
+     * Key of a cached PBKDF2 hash, the password is only kept as its SHA256 fingerprint
+     */
+    private static final class PBKDF2CacheKey {
+        private final byte[] passwordFingerprint;
+        private final byte[] salt;
+        private final int rounds;
+
+        PBKDF2CacheKey(byte[] passwordFingerprint, byte[] salt, int rounds) {
+            this.passwordFingerprint = passwordFingerprint;
+            this.salt = salt.clone();
+            this.rounds = rounds;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PBKDF2CacheKey)) {
+                return false;
+            }
+            PBKDF2CacheKey other = (PBKDF2CacheKey) obj;
+            return rounds == other.rounds && Arrays.equals(passwordFingerprint, other.passwordFingerprint)
+                    && Arrays.equals(salt, other.salt);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Arrays.hashCode(passwordFingerprint) + Arrays.hashCode(salt)) + rounds;
+        }
+    }
 }
@@ -14,28 +14,13 @@ package org.openhab.binding.internal.kostal.inverter.thirdgeneration;
 
 import static org.openhab.binding.internal.kostal.inverter.thirdgeneration.ThirdGenerationBindingConstants.*;
 
-import java.io.UnsupportedEncodingException;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
-import java.util.Base64;
-import java.util.List;
+import java.io.IOException;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.Mac;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import javax.measure.quantity.Dimensionless;
 import javax.measure.quantity.ElectricCharge;
 import javax.measure.quantity.ElectricCurrent;
@@ -59,45 +44,102 @@ import org.eclipse.smarthome.core.thing.ThingStatus;
 import org.eclipse.smarthome.core.thing.ThingStatusDetail;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandler;
 import org.eclipse.smarthome.core.types.Command;
+import org.eclipse.smarthome.core.types.State;
+import org.openhab.binding.internal.kostal.inverter.AdaptiveRefreshInterval;
+import org.openhab.binding.internal.kostal.inverter.ChannelStateFilter;
+import org.openhab.binding.internal.kostal.inverter.CircuitBreaker;
+import org.openhab.binding.internal.kostal.inverter.KostalPollingCoordinator;
+import org.openhab.binding.internal.kostal.inverter.PollingMetrics;
+import org.openhab.binding.internal.kostal.inverter.ReadingAggregator;
+import org.openhab.binding.internal.kostal.inverter.RefreshTier;
+import org.openhab.binding.internal.kostal.inverter.RefreshTierSchedule;
+import org.openhab.binding.internal.kostal.inverter.SampleJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-
 /**
  * The {@link ThirdGenerationHandler} is responsible for handling commands, which are
  * sent to one of the channels.
  *
  * @author René Stakemeier - Initial contribution
+ * @author Örjan Backsell - Asynchronous polling, session manager, precompiled requests of the linked channels, refresh
+ *         tiers, state filter, circuit breaker, aggregates, journal and metrics
  */
 @NonNullByDefault
 public class ThirdGenerationHandler extends BaseThingHandler {
 
     /*
-     * operations used for authentication
+     * Provides the session id which is used to "sign" requests
      */
-    private static final String AUTH_START = "/auth/start";
-    private static final String AUTH_FINISH = "/auth/finish";
-    private static final String AUTH_CREATE_SESSION = "/auth/create_session";
+    private @Nullable ThirdGenerationSessionManager sessionManager;
+    /*
+     * The configuration file containing the host, the password and the refresh interval
+     */
+    private @NonNullByDefault({}) ThirdGenerationConfiguration config;
+
+    private @Nullable KostalPollingCoordinator.Registration refreshScheduler;
 
     /*
-     * operations used for gathering process data from the device
+     * The request for the values of the linked channels of this thing
      */
-    private static final String PROCESSDATA = "/processdata";
+    private @Nullable ThirdGenerationProcessDataSubscription processDataSubscription;
 
     /*
-     * After the authentication the result (the session id) is stored here and used to "sign" future requests
+     * Suppresses updates of channels whose value did not change
      */
-    private @Nullable String sessionId;
+    private @Nullable ChannelStateFilter stateFilter;
+
     /*
-     * The configuration file containing the host, the password and the refresh interval
+     * Decides which channels are refreshed on a tick of the update scheduler
      */
-    private @NonNullByDefault({}) ThirdGenerationConfiguration config;
+    private @Nullable RefreshTierSchedule refreshSchedule;
 
-    private @Nullable ScheduledFuture<?> refreshScheduler;
+    /*
+     * Slows down the updates while the inverter does not produce power
+     */
+    private @Nullable AdaptiveRefreshInterval adaptiveInterval;
 
-    private @Nullable HttpClient httpClient;
+    /*
+     * Stops the updates and the authentication for a while if the inverter cannot be reached
+     */
+    private @Nullable CircuitBreaker circuitBreaker;
+
+    /*
+     * Minimum, maximum, average and energy of the AC power over the last minute, 15 minutes and hour
+     */
+    private @Nullable ReadingAggregator readingAggregator;
+
+    /*
+     * Keeps the readings on disk if enabled
+     */
+    private volatile @Nullable SampleJournal journal;
+
+    /*
+     * Latencies, failures and response sizes of the updates
+     */
+    private volatile @Nullable PollingMetrics pollingMetrics;
+
+    /*
+     * Set while a request for the channel values is outstanding, the next update is skipped until it completed
+     */
+    private final AtomicBoolean updateInProgress = new AtomicBoolean();
+
+    /*
+     * Reports the end of the current update to the polling coordinator
+     */
+    private volatile @Nullable Runnable updateCompletion;
+
+    /*
+     * Start of the current update in nanoseconds
+     */
+    private volatile long updateStart;
+
+    private final HttpClient httpClient;
+
+    /*
+     * Runs the updates of all inverters of the binding
+     */
+    private final KostalPollingCoordinator pollingCoordinator;
 
     private ThirdGenerationInverterTypes inverterType;
 
@@ -107,110 +149,402 @@ public class ThirdGenerationHandler extends BaseThingHandler {
      * Constructor of this class
      *
      * @param thing        the thing
-     * @param httpClient   the httpClient used for communication
-     * @param inverterType the type of the device
+     * @param httpClient         the httpClient used for communication
+     * @param pollingCoordinator runs the updates of the channel values
+     * @param inverterType       the type of the device
      */
-    public ThirdGenerationHandler(Thing thing, HttpClient httpClient, ThirdGenerationInverterTypes inverterType) {
+    public ThirdGenerationHandler(Thing thing, HttpClient httpClient, KostalPollingCoordinator pollingCoordinator,
+            ThirdGenerationInverterTypes inverterType) {
         super(thing);
         this.inverterType = inverterType;
         this.httpClient = httpClient;
+        this.pollingCoordinator = pollingCoordinator;
     }
 
     @Override
     public void handleCommand(ChannelUID channelUID, Command command) {
-        // All channels are readonly and updated by the scheduler
+        // All channels are readonly and updated by the scheduler, a refresh request returns to the configured interval
+        AdaptiveRefreshInterval interval = adaptiveInterval;
+        if (interval != null) {
+            interval.reset();
+        }
+    }
+
+    @Override
+    public void channelLinked(ChannelUID channelUID) {
+        ChannelStateFilter filter = stateFilter;
+        if (filter != null) {
+            filter.reset(channelUID.getId());
+        }
+        ThirdGenerationProcessDataSubscription subscription = processDataSubscription;
+        ReadingAggregator aggregator = readingAggregator;
+        if (subscription != null) {
+            if (aggregator != null && aggregator.isAggregateChannel(channelUID.getId())) {
+                // The aggregates are computed from the AC power
+                subscription.link(aggregator.getSourceChannelId());
+            } else {
+                subscription.link(channelUID.getId());
+            }
+        }
+        super.channelLinked(channelUID);
+    }
+
+    @Override
+    public void channelUnlinked(ChannelUID channelUID) {
+        ThirdGenerationProcessDataSubscription subscription = processDataSubscription;
+        ReadingAggregator aggregator = readingAggregator;
+        String channelId = channelUID.getId();
+        if (aggregator != null && aggregator.isAggregateChannel(channelId)) {
+            // The AC power is kept if it is linked itself or by another aggregate
+            channelId = aggregator.getSourceChannelId();
+        }
+        if (subscription != null && !isLinked(channelId) && !isIdleProbe(channelId) && !isAggregateSource(channelId)) {
+            subscription.unlink(channelId);
+        }
+        super.channelUnlinked(channelUID);
     }
 
     @Override
     public void dispose() {
-        if (refreshScheduler != null) {
-            refreshScheduler.cancel(true);
+        ThirdGenerationSessionManager manager = sessionManager;
+        if (manager != null) {
+            manager.stop();
+            sessionManager = null;
+        }
+        KostalPollingCoordinator.Registration registration = refreshScheduler;
+        if (registration != null) {
+            registration.cancel();
             refreshScheduler = null;
         }
+        SampleJournal sampleJournal = journal;
+        if (sampleJournal != null) {
+            journal = null;
+            sampleJournal.close();
+        }
+        PollingMetrics metrics = pollingMetrics;
+        if (metrics != null) {
+            pollingMetrics = null;
+            metrics.unregister();
+        }
         super.dispose();
     }
 
+    @Override
+    public void handleRemoval() {
+        ThirdGenerationSessionManager.forget(getThing().getUID().toString());
+        super.handleRemoval();
+    }
+
     @Override
     public void initialize() {
         config = getConfigAs(ThirdGenerationConfiguration.class);
         // temporary value while initializing
         updateStatus(ThingStatus.UNKNOWN);
+        updateInProgress.set(false);
+        stateFilter = new ChannelStateFilter(config.absoluteDeadband, config.relativeDeadbandPercent,
+                config.maxSilenceInSeconds);
+
+        // Start the update scheduler as configured, each tick refreshes the tiers which are due
+        Map<RefreshTier, Integer> tierIntervals = new EnumMap<>(RefreshTier.class);
+        tierIntervals.put(RefreshTier.BATTERY, config.batteryRefreshIntervalInSeconds);
+        tierIntervals.put(RefreshTier.STATISTICS, config.statisticsRefreshIntervalInSeconds);
+        tierIntervals.put(RefreshTier.EVENTS, config.eventsRefreshIntervalInSeconds);
+        RefreshTierSchedule schedule = new RefreshTierSchedule(config.refreshInternalInSeconds, tierIntervals);
+        refreshSchedule = schedule;
+        adaptiveInterval = new AdaptiveRefreshInterval(schedule.getTickInSeconds(),
+                config.maxIdleRefreshIntervalInSeconds);
+        circuitBreaker = new CircuitBreaker(schedule.getTickInSeconds());
+        readingAggregator = new ReadingAggregator(CHANNEL_DEVICE_LOCAL_AC_CURRENT_POWER, schedule.getTickInSeconds());
+        if (config.journal) {
+            journal = SampleJournal.open(getThing().getUID().toString(), config.journalRetentionInDays);
+        }
+        pollingMetrics = PollingMetrics.register(getThing().getUID().toString());
+
+        // Only the linked channels are requested, the request is updated when the links change
+        ThirdGenerationProcessDataSubscription subscription = new ThirdGenerationProcessDataSubscription(
+                ThirdGenerationMappingInverterToChannel.getModuleToChannelsMappingForInverter(inverterType));
+        subscription.setLinked(
+                channelId -> isLinked(channelId) || isIdleProbe(channelId) || isAggregateSource(channelId));
+        processDataSubscription = subscription;
+
+        // Start the authentication, a session kept from a previous initialization is reused
+        ThirdGenerationSessionManager manager = new ThirdGenerationSessionManager(httpClient, scheduler,
+                getThing().getUID().toString(), config.url, config.userPassword, this::isSessionRenewalAllowed);
+        sessionManager = manager;
+        manager.start();
+        manager.getSessionId().whenComplete((sessionId, failure) -> {
+            if (failure != null) {
+                authenticationFailed(failure);
+            } else {
+                updateStatus(ThingStatus.ONLINE);
+            }
+        });
 
-        // Start the authentication
-        scheduler.schedule(this::authenticate, 1, TimeUnit.SECONDS);
-
-        // Start the update scheduler as configured
-        refreshScheduler = scheduler.scheduleWithFixedDelay(this::updateChannelValues, 10,
-                config.refreshInternalInSeconds, TimeUnit.SECONDS);
+        refreshScheduler = pollingCoordinator.register(config.url, 10, schedule.getTickInSeconds(),
+                this::updateChannelValues);
     }
 
     /**
      * The API supports the resolution of multiple values at a time
      *
      * Therefore this methods builds one request to gather all information for the current inverter.
-     * The list contains all channels as defined in {@link ThirdGenerationMappingInverterToChannel} for the
-     * current inverter
+     * The list contains all linked channels as defined in {@link ThirdGenerationMappingInverterToChannel} for the
+     * current inverter, which belong to a {@link RefreshTier} that is due
+     *
+     * The request is sent asynchronously, the channels are updated by the http client once the answer arrives.
      *
+     * @param completion run when the update completed
      */
-    private void updateChannelValues() {
-        Map<String, List<ThirdGenerationChannelMappingToWebApi>> channelList = ThirdGenerationMappingInverterToChannel
-                .getModuleToChannelsMappingForInverter(inverterType);
-        JsonArray updateMessageJsonArray = getUpdateChannelMessage(channelList);
+    private void updateChannelValues(Runnable completion) {
+        ThirdGenerationProcessDataSubscription subscription = processDataSubscription;
+        RefreshTierSchedule schedule = refreshSchedule;
+        AdaptiveRefreshInterval interval = adaptiveInterval;
+        if (subscription == null || schedule == null || interval == null || !interval.isDue()) {
+            completion.run();
+            return;
+        }
+        Set<RefreshTier> dueTiers = schedule.nextTick();
+        if (dueTiers.isEmpty()) {
+            completion.run();
+            return;
+        }
+        ThirdGenerationProcessDataRequest request = subscription.getRequest(dueTiers);
+        if (request.isEmpty()) {
+            // No channel of the due tiers linked
+            completion.run();
+            return;
+        }
+        if (!updateInProgress.compareAndSet(false, true)) {
+            logger.debug("Previous update of {} has not completed yet, skipping this one", getThing().getUID());
+            schedule.defer(dueTiers);
+            completion.run();
+            return;
+        }
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker != null && !breaker.allowRequest()) {
+            // The inverter was not reachable, neither authenticate nor request the values until the backoff passed
+            updateInProgress.set(false);
+            schedule.defer(dueTiers);
+            completion.run();
+            return;
+        }
+        updateStart = System.nanoTime();
+        updateCompletion = completion;
+        requestChannelValues(request);
+    }
 
-        // Send the API request to get values for all channels
-        ContentResponse updateMessageContentResponse;
+    /**
+     * Sends the API request to get values for all channels
+     *
+     * @param request the precompiled request of this thing
+     */
+    private void requestChannelValues(ThirdGenerationProcessDataRequest request) {
+        ThirdGenerationSessionManager manager = sessionManager;
+        if (manager == null) {
+            // Handler has been disposed
+            finishUpdate();
+            return;
+        }
+        PollingMetrics metrics = pollingMetrics;
+        ThirdGenerationProcessDataPoll.start(httpClient, config.url, manager, request, metrics, true,
+                new ThirdGenerationProcessDataPoll.Listener() {
+                    @Override
+                    public void authenticationFailed(Throwable failure) {
+                        ThirdGenerationHandler.this.authenticationFailed(failure);
+                        finishUpdate();
+                    }
+
+                    @Override
+                    public void requestFailed(Throwable failure) {
+                        updateCompleted(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
+                                COMMUNICATION_ERROR_HTTP);
+                    }
+
+                    @Override
+                    public void answerReceived(ContentResponse response) {
+                        readChannelValues(request, response, metrics);
+                    }
+                });
+    }
+
+    /**
+     * Maps the values of the answer back to the channels and updates them
+     */
+    private void readChannelValues(ThirdGenerationProcessDataRequest request, ContentResponse response,
+            @Nullable PollingMetrics metrics) {
+        if (response.getStatus() == 404) {
+            // Module not found
+            updateCompleted(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
+                    COMMUNICATION_ERROR_INCOMPATIBLE_DEVICE);
+            return;
+        }
+        if (response.getStatus() == 503) {
+            // Communication error (e.g. during initial boot of the SCB)
+            updateCompleted(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, COMMUNICATION_ERROR_HTTP);
+            return;
+        }
+        if (response.getStatus() == 401) {
+            // The inverter rejects even a new session
+            updateCompleted(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
+                    COMMUNICATION_ERROR_AUTHENTICATION);
+            return;
+        }
+        if (response.getStatus() != 200) {
+            // Any other error status, there is no answer to parse
+            updateCompleted(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, COMMUNICATION_ERROR_HTTP);
+            return;
+        }
+        AtomicReference<@Nullable Double> dcPower = new AtomicReference<>();
+        // Time spent updating the channels, it is not counted as parsing
+        long[] updateNanos = new long[1];
+        long parseStart = System.nanoTime();
         try {
-            updateMessageContentResponse = ThirdGenerationHttpHelper.executeHttpPost(httpClient, config.url,
-                    PROCESSDATA, updateMessageJsonArray, sessionId);
-            if (updateMessageContentResponse.getStatus() == 404) {
-                // Module not found
-                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR,
-                        COMMUNICATION_ERROR_INCOMPATIBLE_DEVICE);
-                return;
-            }
-            if (updateMessageContentResponse.getStatus() == 503) {
-                // Communication error (e.g. during initial boot of the SCB)
-                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR,
-                        COMMUNICATION_ERROR_HTTP);
-                return;
-            }
-            if (updateMessageContentResponse.getStatus() == 401) {
-                // session not valid (timed out? device rebooted?)
-                logger.info("Session expired - performing retry");
-                authenticate();
-                // Retry
-                updateMessageContentResponse = ThirdGenerationHttpHelper.executeHttpPost(httpClient, config.url,
-                        PROCESSDATA, updateMessageJsonArray, sessionId);
+            request.readAnswer(response.getContent(), (channel, value) -> {
+                long updateChannelStart = System.nanoTime();
+                updateChannelValue(channel.channelUID, channel.dataType, value);
+                updateNanos[0] += System.nanoTime() - updateChannelStart;
+                if (CHANNEL_DEVICE_LOCAL_DC_POWER.equals(channel.channelUID)) {
+                    dcPower.set(value);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            // No valid JSON answer received, or a channel could not be updated. The exception must not escape, the
+            // future would swallow it and the update would never complete
+            logger.debug("Error processing the answer of {}", getThing().getUID(), e);
+            if (metrics != null) {
+                metrics.recordFailure(e);
             }
-        } catch (TimeoutException | ExecutionException e) {
-            // Communication problem
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR, COMMUNICATION_ERROR_HTTP);
+            updateCompleted(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, COMMUNICATION_ERROR_JSON);
             return;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR, COMMUNICATION_ERROR_HTTP);
+        }
+        if (metrics != null) {
+            metrics.record(PollingMetrics.Phase.PARSE, System.nanoTime() - parseStart - updateNanos[0]);
+            metrics.record(PollingMetrics.Phase.UPDATE, updateNanos[0]);
+        }
+        AdaptiveRefreshInterval interval = adaptiveInterval;
+        Double power = dcPower.get();
+        if (interval != null) {
+            interval.update(power == null ? null : AdaptiveRefreshInterval.isIdlePower(power));
+        }
+        updateCompleted(ThingStatus.ONLINE, ThingStatusDetail.NONE, null);
+    }
+
+    /**
+     * The DC power tells if the inverter is idle, it is requested even if the channel is not linked
+     */
+    private boolean isIdleProbe(String channelId) {
+        AdaptiveRefreshInterval interval = adaptiveInterval;
+        return interval != null && interval.isEnabled() && CHANNEL_DEVICE_LOCAL_DC_POWER.equals(channelId);
+    }
+
+    /**
+     * The AC power is requested even if it is not linked as long as one of its aggregates is linked
+     */
+    private boolean isAggregateSource(String channelId) {
+        ReadingAggregator aggregator = readingAggregator;
+        return aggregator != null && aggregator.getSourceChannelId().equals(channelId)
+                && aggregator.isAnyLinked(this::isLinked);
+    }
+
+    /**
+     * The session is not renewed in the background while the circuit breaker keeps the inverter from being polled
+     */
+    private boolean isSessionRenewalAllowed() {
+        CircuitBreaker breaker = circuitBreaker;
+        return breaker == null || breaker.getState() == CircuitBreaker.State.CLOSED;
+    }
+
+    /**
+     * Shows the reason of a failed authentication
+     */
+    private void authenticationFailed(Throwable failure) {
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker != null && !breaker.recordFailure()) {
+            // While the inverter stays unreachable the failure is only reported now and then
             return;
         }
-        JsonArray updateMessageResultsJsonArray = ThirdGenerationHttpHelper
-                .getJsonArrayFromResponse(updateMessageContentResponse);
-
-        // Map the returned values back to the channels and update them
-        for (int i = 0; i < updateMessageResultsJsonArray.size(); i++) {
-            JsonObject moduleAnswer = updateMessageResultsJsonArray.get(i).getAsJsonObject();
-            String moduleName = moduleAnswer.get("moduleid").getAsString();
-            JsonArray processdata = moduleAnswer.get("processdata").getAsJsonArray();
-            for (int j = 0; j < processdata.size(); j++) {
-                // Update the channels with their new value
-                JsonObject newValueObject = processdata.get(j).getAsJsonObject();
-                String valueId = newValueObject.get("id").getAsString();
-                double valueAsDouble = newValueObject.get("value").getAsDouble();
-                ThirdGenerationChannelMappingToWebApi channel = channelList.get(moduleName).stream()
-                        .filter(c -> c.moduleId.equals(moduleName) && c.processdataId.equals(valueId)).findFirst()
-                        .get();
-                updateChannelValue(channel.channelUID, channel.dataType, valueAsDouble);
+        ThirdGenerationSessionManager.AuthenticationException authenticationException = ThirdGenerationSessionManager
+                .getAuthenticationException(failure);
+        if (authenticationException != null) {
+            updateStatus(ThingStatus.OFFLINE, authenticationException.statusDetail,
+                    authenticationException.description);
+        } else {
+            logger.debug("Authentication of {} failed", getThing().getUID(), failure);
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR,
+                    COMMUNICATION_ERROR_AUTHENTICATION);
+        }
+    }
+
+    /**
+     * Finishes the current update and allows the next one to start
+     */
+    private void updateCompleted(ThingStatus status, ThingStatusDetail statusDetail, @Nullable String description) {
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker == null) {
+            updateStatus(status, statusDetail, description);
+        } else if (status == ThingStatus.ONLINE) {
+            if (breaker.recordSuccess()) {
+                logger.debug("Inverter {} is reachable again", getThing().getUID());
+            }
+            updateStatus(status, statusDetail, description);
+        } else if (breaker.recordFailure()) {
+            // While the inverter stays unreachable the failure is only reported now and then
+            updateStatus(status, statusDetail, description);
+        }
+        finishUpdate();
+    }
+
+    /**
+     * Allows the next update to start
+     */
+    private void finishUpdate() {
+        updateInProgress.set(false);
+        Runnable completion = updateCompletion;
+        updateCompletion = null;
+        if (completion != null) {
+            PollingMetrics metrics = pollingMetrics;
+            if (metrics != null) {
+                metrics.pollCompleted(updateStart);
+                metrics.publish(this::isLinked, this::updateState);
             }
+            completion.run();
+        }
+    }
+
+    /**
+     * Updates the channel, if the state differs from the one published before
+     *
+     * @param channeluid Channel to update
+     * @param state      the new state
+     */
+    private void publishState(String channeluid, State state) {
+        ChannelStateFilter filter = stateFilter;
+        boolean published = filter == null || filter.filter(channeluid, state);
+        if (published) {
+            updateState(channeluid, state);
+        }
+        PollingMetrics metrics = pollingMetrics;
+        if (metrics != null) {
+            metrics.recordUpdate(published);
+        }
+    }
+
+    /**
+     * Publishes a value read from the inverter and passes it to the journal and the aggregates
+     *
+     * @param channeluid Channel to update
+     * @param state      the new state
+     */
+    private void publishReading(String channeluid, State state) {
+        SampleJournal sampleJournal = journal;
+        if (sampleJournal != null) {
+            sampleJournal.record(channeluid, state);
+        }
+        publishState(channeluid, state);
+        ReadingAggregator aggregator = readingAggregator;
+        if (aggregator != null && aggregator.record(channeluid, state)) {
+            aggregator.publish(this::isLinked, this::publishState);
         }
-        updateStatus(ThingStatus.ONLINE);
     }
 
     /**
@@ -221,43 +555,43 @@ public class ThirdGenerationHandler extends BaseThingHandler {
      * @param dataType   target data type
      * @param value      value
      */
-    private void updateChannelValue(String channeluid, ThirdGenerationChannelDatatypes dataType, Double value) {
+    private void updateChannelValue(String channeluid, ThirdGenerationChannelDatatypes dataType, double value) {
         switch (dataType) {
             case INTEGER: {
-                updateState(channeluid, new DecimalType(value.longValue()));
+                publishReading(channeluid, new DecimalType((long) value));
                 break;
             }
             case PERCEMTAGE: {
-                updateState(channeluid, new QuantityType<Dimensionless>(value, SmartHomeUnits.PERCENT));
+                publishReading(channeluid, new QuantityType<Dimensionless>(value, SmartHomeUnits.PERCENT));
                 break;
             }
             case KILOGRAM: {
-                updateState(channeluid, new QuantityType<Mass>(value / 1000, SIUnits.KILOGRAM));
+                publishReading(channeluid, new QuantityType<Mass>(value / 1000, SIUnits.KILOGRAM));
                 break;
             }
             case SECONDS: {
-                updateState(channeluid, new QuantityType<Time>(value, SmartHomeUnits.SECOND));
+                publishReading(channeluid, new QuantityType<Time>(value, SmartHomeUnits.SECOND));
                 break;
             }
             case KILOWATT_HOUR: {
-                updateState(channeluid, new QuantityType<Energy>(value / 1000, SmartHomeUnits.KILOWATT_HOUR));
+                publishReading(channeluid, new QuantityType<Energy>(value / 1000, SmartHomeUnits.KILOWATT_HOUR));
                 break;
             }
             case WATT: {
-                updateState(channeluid, new QuantityType<Power>(value, SmartHomeUnits.WATT));
+                publishReading(channeluid, new QuantityType<Power>(value, SmartHomeUnits.WATT));
                 break;
             }
             case AMPERE: {
-                updateState(channeluid, new QuantityType<ElectricCurrent>(value, SmartHomeUnits.AMPERE));
+                publishReading(channeluid, new QuantityType<ElectricCurrent>(value, SmartHomeUnits.AMPERE));
                 break;
             }
             case AMPERE_HOUR: {
                 // Ampere hours are not supported by ESH, but 1 AH is equal tp 3600 coulomb...
-                updateState(channeluid, new QuantityType<ElectricCharge>(value * 3600, SmartHomeUnits.COULOMB));
+                publishReading(channeluid, new QuantityType<ElectricCharge>(value * 3600, SmartHomeUnits.COULOMB));
                 break;
             }
             case VOLT: {
-                updateState(channeluid, new QuantityType<ElectricPotential>(value, SmartHomeUnits.VOLT));
+                publishReading(channeluid, new QuantityType<ElectricPotential>(value, SmartHomeUnits.VOLT));
                 break;
             }
             default: {
@@ -267,228 +601,4 @@ public class ThirdGenerationHandler extends BaseThingHandler {
         }
     }
 
-    /**
-     * Creates the message which has to be send to the inverter to gather the current informations for all channels
-     *
-     * @param channelList channels of this thing
-     * @return the JSON array to send to the device
-     */
-    private JsonArray getUpdateChannelMessage(Map<String, List<ThirdGenerationChannelMappingToWebApi>> channelList) {
-        // Build the message to send to the inverter
-        JsonArray updateMessageJsonArray = new JsonArray();
-        for (Entry<String, List<ThirdGenerationChannelMappingToWebApi>> moduleId : channelList.entrySet()) {
-            JsonObject moduleJsonObject = new JsonObject();
-            moduleJsonObject.addProperty("moduleid", moduleId.getKey());
-
-            JsonArray processdataNames = new JsonArray();
-            for (ThirdGenerationChannelMappingToWebApi processdata : channelList.get(moduleId.getKey())) {
-                processdataNames.add(processdata.processdataId);
-            }
-            moduleJsonObject.add("processdataids", processdataNames);
-            updateMessageJsonArray.add(moduleJsonObject);
-        }
-        return updateMessageJsonArray;
-    }
-
-    /**
-     * This function is used to authenticate against the SCB.
-     * SCB uses PBKDF2 and AES256 GCM mode with a slightly modified authentication message.
-     * The authentication will fail on JRE < 8u162. since the security policy is set to "limited" by default (see readme
-     * for fix)
-     */
-    private final void authenticate() {
-        // Create random numbers
-        String clientNonce = ThirdGenerationEncryptionHelper.createClientNonce();
-        // Perform first step of authentication
-        JsonObject authMeJsonObject = new JsonObject();
-        authMeJsonObject.addProperty("username", USER_TYPE);
-        authMeJsonObject.addProperty("nonce", clientNonce);
-
-        ContentResponse authStartResponseContentResponse;
-        try {
-            authStartResponseContentResponse = ThirdGenerationHttpHelper.executeHttpPost(httpClient, config.url,
-                    AUTH_START, authMeJsonObject);
-
-            // 200 is the desired status code
-            int statusCode = authStartResponseContentResponse.getStatus();
-
-            if (statusCode == 400) {
-                // Invalid user (which is hard coded and therefore can not be wrong until the api is changed by the
-                // manufacturer
-                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR,
-                        COMMUNICATION_ERROR_API_CHANGED);
-                return;
-            }
-            if (statusCode == 403) {
-                // User is logged
-                // This can happen, if the user had to many bad attempts of entering the password in the web
-                // front end
-                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.CONFIGURATION_ERROR,
-                        COMMUNICATION_ERROR_USER_ACCOUNT_LOCKED);
-                return;
-            }
-
-            if (statusCode == 503) {
-                // internal communication error
-                // This can happen if the device is not ready yet for communication
-                updateStatus(ThingStatus.UNINITIALIZED);
-                return;
-            }
-        } catch (InterruptedException | TimeoutException | ExecutionException e) {
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR, COMMUNICATION_ERROR_HTTP);
-            return;
-        }
-        JsonObject authMeResponseJsonObject = ThirdGenerationHttpHelper
-                .getJsonObjectFromResponse(authStartResponseContentResponse);
-
-        // Extract information from the response
-        String salt = authMeResponseJsonObject.get("salt").getAsString();
-        String serverNonce = authMeResponseJsonObject.get("nonce").getAsString();
-        int rounds = authMeResponseJsonObject.get("rounds").getAsInt();
-        String transactionId = authMeResponseJsonObject.get("transactionId").getAsString();
-
-        // Do the cryptography stuff (magic happens here)
-        byte[] saltedPasswort;
-        byte[] clientKey;
-        byte[] serverKey;
-        byte[] storedKey;
-        byte[] clientSignature;
-        byte[] serverSignature;
-        String authMessage;
-        try {
-            saltedPasswort = ThirdGenerationEncryptionHelper.getPBKDF2Hash(config.userPassword,
-                    Base64.getDecoder().decode(salt), rounds);
-            clientKey = ThirdGenerationEncryptionHelper.getHMACSha256(saltedPasswort, "Client Key");
-            serverKey = ThirdGenerationEncryptionHelper.getHMACSha256(saltedPasswort, "Server Key");
-            storedKey = ThirdGenerationEncryptionHelper.getSha256Hash(clientKey);
-            authMessage = String.format("n=%s,r=%s,r=%s,s=%s,i=%d,c=biws,r=%s", USER_TYPE, clientNonce, serverNonce,
-                    salt, rounds, serverNonce);
-            clientSignature = ThirdGenerationEncryptionHelper.getHMACSha256(storedKey, authMessage);
-            serverSignature = ThirdGenerationEncryptionHelper.getHMACSha256(serverKey, authMessage);
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException | InvalidKeyException | IllegalStateException e2) {
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR,
-                    COMMUNICATION_ERROR_AUTHENTICATION);
-            return;
-        }
-        String clientProof = ThirdGenerationEncryptionHelper.createClientProof(clientSignature, clientKey);
-        // Perform step 2 of the authentication
-        JsonObject authFinishJsonObject = new JsonObject();
-        authFinishJsonObject.addProperty("transactionId", transactionId);
-        authFinishJsonObject.addProperty("proof", clientProof);
-
-        ContentResponse authFinishResponseContentResponse;
-        JsonObject authFinishResponseJsonObject;
-        try {
-            authFinishResponseContentResponse = ThirdGenerationHttpHelper.executeHttpPost(httpClient, config.url,
-                    AUTH_FINISH, authFinishJsonObject);
-            authFinishResponseJsonObject = ThirdGenerationHttpHelper
-                    .getJsonObjectFromResponse(authFinishResponseContentResponse);
-            // 200 is the desired status code
-            if (authFinishResponseContentResponse.getStatus() == 400) {
-                // Authentication failed
-                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR,
-                        CONFIGURATION_ERROR_PASSWORD);
-                return;
-            }
-        } catch (InterruptedException | TimeoutException | ExecutionException e3) {
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR, COMMUNICATION_ERROR_HTTP);
-            return;
-        }
-
-        // Extract information from the response
-        byte[] signature = Base64.getDecoder().decode(authFinishResponseJsonObject.get("signature").getAsString());
-        String token = authFinishResponseJsonObject.get("token").getAsString();
-
-        // Validate provided signature against calculated signature
-        if (!java.util.Arrays.equals(serverSignature, signature)) {
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR,
-                    COMMUNICATION_ERROR_AUTHENTICATION);
-            return;
-        }
-
-        // Calculate protocol key
-        SecretKeySpec signingKey = new SecretKeySpec(storedKey, HMAC_SHA256_ALGORITHM);
-        Mac mac;
-        byte[] protocolKeyHMAC;
-        try {
-            mac = Mac.getInstance(HMAC_SHA256_ALGORITHM);
-            mac.init(signingKey);
-            mac.update("Session Key".getBytes());
-            mac.update(authMessage.getBytes());
-            mac.update(clientKey);
-            protocolKeyHMAC = mac.doFinal();
-        } catch (NoSuchAlgorithmException | InvalidKeyException e1) {
-            // Since the necessary libraries are provided, this should not happen
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.CONFIGURATION_ERROR,
-                    COMMUNICATION_ERROR_AUTHENTICATION);
-            return;
-        }
-
-        byte[] data;
-        byte[] iv;
-
-        // AES GCM stuff
-        iv = new byte[16];
-
-        new SecureRandom().nextBytes(iv);
-
-        SecretKeySpec skeySpec = new SecretKeySpec(protocolKeyHMAC, "AES");
-        GCMParameterSpec param = new GCMParameterSpec(protocolKeyHMAC.length * 8 - AES_GCM_TAG_LENGTH, iv);
-
-        Cipher cipher;
-        try {
-            cipher = Cipher.getInstance("AES_256/GCM/NOPADDING");
-            cipher.init(Cipher.ENCRYPT_MODE, skeySpec, param);
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException
-                | InvalidAlgorithmParameterException e1) {
-            // The java installation does not support AES encryption in GCM mode
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR,
-                    COMMUNICATION_ERROR_AUTHENTICATION);
-            return;
-        }
-        try {
-            data = cipher.doFinal(token.getBytes("UTF-8"));
-        } catch (IllegalBlockSizeException | BadPaddingException | UnsupportedEncodingException e1) {
-            // No JSON answer received
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR, COMMUNICATION_ERROR_JSON);
-            return;
-        }
-
-        byte[] ciphertext = new byte[data.length - AES_GCM_TAG_LENGTH / 8];
-        byte[] gcmTag = new byte[AES_GCM_TAG_LENGTH / 8];
-        System.arraycopy(data, 0, ciphertext, 0, data.length - AES_GCM_TAG_LENGTH / 8);
-        System.arraycopy(data, data.length - AES_GCM_TAG_LENGTH / 8, gcmTag, 0, AES_GCM_TAG_LENGTH / 8);
-
-        JsonObject createSessionJsonObject = new JsonObject();
-        createSessionJsonObject.addProperty("transactionId", transactionId);
-        createSessionJsonObject.addProperty("iv", Base64.getEncoder().encodeToString(iv));
-        createSessionJsonObject.addProperty("tag", Base64.getEncoder().encodeToString(gcmTag));
-        createSessionJsonObject.addProperty("payload", Base64.getEncoder().encodeToString(ciphertext));
-
-        // finally create the session for further communication
-        ContentResponse createSessionResponseContentResponse;
-        JsonObject createSessionResponseJsonObject;
-        try {
-            createSessionResponseContentResponse = ThirdGenerationHttpHelper.executeHttpPost(httpClient, config.url,
-                    AUTH_CREATE_SESSION, createSessionJsonObject);
-            createSessionResponseJsonObject = ThirdGenerationHttpHelper
-                    .getJsonObjectFromResponse(createSessionResponseContentResponse);
-        } catch (InterruptedException | TimeoutException | ExecutionException e) {
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR,
-                    COMMUNICATION_ERROR_AUTHENTICATION);
-            return;
-        }
-        // 200 is the desired status code
-        if (createSessionResponseContentResponse.getStatus() == 400) {
-            // Authentication failed
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.OFFLINE.COMMUNICATION_ERROR,
-                    CONFIGURATION_ERROR_PASSWORD);
-            return;
-        }
-
-        sessionId = createSessionResponseJsonObject.get("sessionId").getAsString();
-
-        updateStatus(ThingStatus.ONLINE);
-    }
-
 }
@@ -12,14 +12,20 @@
  */
 package org.openhab.binding.internal.kostal.inverter.thirdgeneration;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpContentResponse;
+import org.eclipse.jetty.client.api.ContentProvider;
 import org.eclipse.jetty.client.api.ContentResponse;
 import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.client.util.BytesContentProvider;
 import org.eclipse.jetty.client.util.StringContentProvider;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
@@ -37,6 +43,7 @@ import com.google.gson.JsonObject;
  * handlers.
  *
  * @author René Stakemeier - Initial contribution
+ * @author Örjan Backsell - Asynchronous requests and host:port urls
  */
 final class ThirdGenerationHttpHelper {
 
@@ -81,15 +88,38 @@ final class ThirdGenerationHttpHelper {
      */
     static ContentResponse executeHttpPost(HttpClient httpClient, String url, String resource, JsonElement parameters,
             @Nullable String sessionId) throws InterruptedException, TimeoutException, ExecutionException {
-        Request response = httpClient.newRequest(String.format("%s/%s%s", url, WEB_API, resource), 80).scheme("http")
-                .agent("Jetty HTTP client").version(HttpVersion.HTTP_1_1).method(HttpMethod.POST)
-                .header(HttpHeader.ACCEPT, "application/json").header(HttpHeader.CONTENT_TYPE, "application/json")
-                .timeout(5, TimeUnit.SECONDS);
-        response.content(new StringContentProvider(parameters.toString()));
-        if (sessionId != null) {
-            response.header(HttpHeader.AUTHORIZATION, String.format("Session %s", sessionId));
-        }
-        return response.send();
+        return createHttpPost(httpClient, url, resource, parameters, sessionId).send();
+    }
+
+    /**
+     * Helper function to execute a HTTP post request without blocking the calling thread
+     *
+     * @param httpClient httpClient to use for communication
+     * @param url        IP or hostname or the device
+     * @param resource   web API resource to post to
+     * @param parameters the JSON content to post
+     * @param sessionId  optional session ID
+     * @return future completed with the HTTP response or exceptionally on communication problems
+     */
+    static CompletableFuture<ContentResponse> executeHttpPostAsync(HttpClient httpClient, String url, String resource,
+            JsonElement parameters, @Nullable String sessionId) {
+        return sendAsync(createHttpPost(httpClient, url, resource, parameters, sessionId));
+    }
+
+    /**
+     * Helper function to execute a HTTP post request with prepared content without blocking the calling thread
+     *
+     * @param httpClient httpClient to use for communication
+     * @param url        IP or hostname or the device
+     * @param resource   web API resource to post to
+     * @param content    the serialized JSON content to post, it is not modified
+     * @param sessionId  optional session ID
+     * @return future completed with the HTTP response or exceptionally on communication problems
+     */
+    static CompletableFuture<ContentResponse> executeHttpPostAsync(HttpClient httpClient, String url, String resource,
+            byte[] content, @Nullable String sessionId) {
+        ContentProvider contentProvider = new BytesContentProvider("application/json", content);
+        return sendAsync(createHttpPost(httpClient, url, resource, contentProvider, sessionId));
     }
 
     /**
@@ -123,14 +153,85 @@ final class ThirdGenerationHttpHelper {
      */
     static ContentResponse executeHttpGet(HttpClient httpClient, String url, String resource,
             @Nullable String sessionId) throws InterruptedException, TimeoutException, ExecutionException {
-        Request response = httpClient.newRequest(String.format("%s/%s%s", url, WEB_API, resource), 80).scheme("http")
+        return createHttpGet(httpClient, url, resource, sessionId).send();
+    }
+
+    /**
+     * Helper function to execute a HTTP get request without blocking the calling thread
+     *
+     * @param httpClient httpClient to use for communication
+     * @param url        IP or hostname or the device
+     * @param resource   web API resource to get
+     * @param sessionId  optional session ID
+     * @return future completed with the HTTP response or exceptionally on communication problems
+     */
+    static CompletableFuture<ContentResponse> executeHttpGetAsync(HttpClient httpClient, String url, String resource,
+            @Nullable String sessionId) {
+        return sendAsync(createHttpGet(httpClient, url, resource, sessionId));
+    }
+
+    /**
+     * Builds the URI of a web API resource. The port 80 of the device is used unless the url names another one,
+     * e.g. 192.168.1.2:8080
+     *
+     * @param url      IP or hostname or the device, optionally followed by the port
+     * @param resource web API resource
+     * @return the URI of the resource
+     */
+    static String getUri(String url, String resource) {
+        return String.format("http://%s%s%s", url, WEB_API, resource);
+    }
+
+    private static Request createHttpPost(HttpClient httpClient, String url, String resource, JsonElement parameters,
+            @Nullable String sessionId) {
+        return createHttpPost(httpClient, url, resource, new StringContentProvider(parameters.toString()), sessionId);
+    }
+
+    private static Request createHttpPost(HttpClient httpClient, String url, String resource, ContentProvider content,
+            @Nullable String sessionId) {
+        Request response = httpClient.newRequest(getUri(url, resource)).scheme("http")
+                .agent("Jetty HTTP client").version(HttpVersion.HTTP_1_1).method(HttpMethod.POST)
+                .header(HttpHeader.ACCEPT, "application/json").header(HttpHeader.CONTENT_TYPE, "application/json")
+                .timeout(5, TimeUnit.SECONDS);
+        response.content(content);
+        if (sessionId != null) {
+            response.header(HttpHeader.AUTHORIZATION, String.format("Session %s", sessionId));
+        }
+        return response;
+    }
+
+    private static Request createHttpGet(HttpClient httpClient, String url, String resource,
+            @Nullable String sessionId) {
+        Request response = httpClient.newRequest(getUri(url, resource)).scheme("http")
                 .agent("Jetty HTTP client").version(HttpVersion.HTTP_1_1).method(HttpMethod.GET)
                 .header(HttpHeader.ACCEPT, "application/json").header(HttpHeader.CONTENT_TYPE, "application/json")
                 .timeout(5, TimeUnit.SECONDS);
         if (sessionId != null) {
             response.header(HttpHeader.AUTHORIZATION, String.format("Session %s", sessionId));
         }
-        return response.send();
+        return response;
+    }
+
+    /**
+     * Sends the request and completes the returned future from the http client's thread once the response is complete
+     *
+     * @param request the request to send
+     * @return future completed with the HTTP response
+     */
+    private static CompletableFuture<ContentResponse> sendAsync(Request request) {
+        CompletableFuture<ContentResponse> future = new CompletableFuture<>();
+        request.send(new BufferingResponseListener() {
+            @Override
+            public void onComplete(Result result) {
+                if (result.isFailed()) {
+                    future.completeExceptionally(result.getFailure());
+                    return;
+                }
+                future.complete(new HttpContentResponse(result.getResponse(), getContent(), getMediaType(),
+                        getEncoding()));
+            }
+        });
+        return future;
     }
 
     /**
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.thirdgeneration;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.openhab.binding.internal.kostal.inverter.PollingMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link ThirdGenerationProcessDataPoll} sends the precompiled processdata request of one inverter over its
+ * session. A session the inverter rejects (timed out, device rebooted) is renewed and the request is sent once more.
+ * The {@link ThirdGenerationHandler} and the fleet benchmark poll through it, so that both send the same requests.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+@NonNullByDefault
+final class ThirdGenerationProcessDataPoll {
+
+    /*
+     * operations used for gathering process data from the device
+     */
+    static final String PROCESSDATA = "/processdata";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThirdGenerationProcessDataPoll.class);
+
+    /**
+     * Receives the outcome of a poll, exactly one of the methods is called
+     */
+    interface Listener {
+        /**
+         * Called if no session could be established
+         */
+        void authenticationFailed(Throwable failure);
+
+        /**
+         * Called if the request could not be sent or no answer arrived
+         */
+        void requestFailed(Throwable failure);
+
+        /**
+         * Called with the answer of the inverter. A 401 status means that even a renewed session was rejected.
+         */
+        void answerReceived(ContentResponse response);
+    }
+
+    private ThirdGenerationProcessDataPoll() {
+    }
+
+    /**
+     * Sends the request asynchronously
+     *
+     * @param httpClient            the shared http client
+     * @param url                   the url of the inverter
+     * @param manager               the session manager of the inverter
+     * @param request               the precompiled request
+     * @param metrics               records the authentication, request and status, null if not measured
+     * @param retryOnExpiredSession authenticate and retry once if the session is not valid anymore
+     * @param listener              receives the outcome
+     */
+    static void start(HttpClient httpClient, String url, ThirdGenerationSessionManager manager,
+            ThirdGenerationProcessDataRequest request, @Nullable PollingMetrics metrics, boolean retryOnExpiredSession,
+            Listener listener) {
+        long authenticationStart = System.nanoTime();
+        CompletableFuture<String> session = manager.getSessionId();
+        // The session is only pending while the manager authenticates
+        boolean authenticating = !session.isDone();
+        session.whenComplete((sessionId, authenticationFailure) -> {
+            if (authenticationFailure != null) {
+                if (metrics != null) {
+                    metrics.recordFailure(authenticationFailure);
+                }
+                listener.authenticationFailed(authenticationFailure);
+                return;
+            }
+            if (metrics != null && authenticating) {
+                metrics.recordAuthentication(authenticationStart);
+            }
+            long requestStart = System.nanoTime();
+            ThirdGenerationHttpHelper.executeHttpPostAsync(httpClient, url, PROCESSDATA, request.getBody(), sessionId)
+                    .whenComplete((response, failure) -> {
+                        if (metrics != null) {
+                            metrics.recordSince(PollingMetrics.Phase.REQUEST, requestStart);
+                        }
+                        if (failure != null) {
+                            // Communication problem
+                            if (metrics != null) {
+                                metrics.recordFailure(failure);
+                            }
+                            listener.requestFailed(failure);
+                            return;
+                        }
+                        if (metrics != null) {
+                            metrics.recordStatus(response.getStatus());
+                            metrics.recordResponse(response.getContent().length);
+                        }
+                        if (response.getStatus() == 401) {
+                            // session not valid (timed out? device rebooted?)
+                            manager.invalidate(sessionId);
+                            if (retryOnExpiredSession) {
+                                LOGGER.info("Session expired - performing retry");
+                                start(httpClient, url, manager, request, metrics, false, listener);
+                                return;
+                            }
+                        }
+                        listener.answerReceived(response);
+                    });
+        });
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.thirdgeneration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * The {@link ThirdGenerationProcessDataRequest} is the precompiled processdata request for the linked channels of one
+ * thing.
+ * The request body is serialized once, the values of the answer are assigned to their channels by a lookup table.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+@NonNullByDefault
+final class ThirdGenerationProcessDataRequest {
+
+    /**
+     * Receives the values of an answer
+     */
+    interface ValueConsumer {
+        /**
+         * @param channel the channel the value belongs to
+         * @param value   the new value
+         */
+        void accept(ThirdGenerationChannelMappingToWebApi channel, double value);
+    }
+
+    /*
+     * The serialized request, shared by all polls
+     */
+    private final byte[] body;
+    /*
+     * Channels by module id and process data id
+     */
+    private final Map<String, Map<String, ThirdGenerationChannelMappingToWebApi>> channelsByModule;
+
+    /**
+     * Constructor of this class
+     *
+     * @param body             the serialized request
+     * @param channelsByModule channels of the request by module id and process data id
+     */
+    ThirdGenerationProcessDataRequest(byte[] body,
+            Map<String, Map<String, ThirdGenerationChannelMappingToWebApi>> channelsByModule) {
+        this.body = body;
+        this.channelsByModule = channelsByModule;
+    }
+
+    /**
+     * @return true if the request does not contain any process data
+     */
+    boolean isEmpty() {
+        return channelsByModule.isEmpty();
+    }
+
+    /**
+     * @return the serialized request, it must not be modified
+     */
+    byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return the channel of the given process data or null if it has not been requested
+     */
+    @Nullable
+    ThirdGenerationChannelMappingToWebApi getChannel(String moduleId, String processdataId) {
+        Map<String, ThirdGenerationChannelMappingToWebApi> channels = channelsByModule.get(moduleId);
+        return channels == null ? null : channels.get(processdataId);
+    }
+
+    /**
+     * Reads the answer of the device and hands over each value of a requested channel
+     *
+     * @param content  the answer of the device
+     * @param consumer receives the values
+     * @throws IOException if the answer does not match the expected format
+     */
+    void readAnswer(byte[] content, ValueConsumer consumer) throws IOException {
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readModule(reader, consumer);
+            }
+            reader.endArray();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Unexpected answer", e);
+        }
+    }
+
+    private void readModule(JsonReader reader, ValueConsumer consumer) throws IOException {
+        String moduleId = null;
+        // Only needed if the device sends the process data before the module id
+        List<String> pendingIds = null;
+        List<Double> pendingValues = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("moduleid".equals(name)) {
+                moduleId = reader.nextString();
+            } else if ("processdata".equals(name)) {
+                if (moduleId == null) {
+                    pendingIds = new ArrayList<>();
+                    pendingValues = new ArrayList<>();
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readProcessData(reader, moduleId, consumer, pendingIds, pendingValues);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (moduleId != null && pendingIds != null && pendingValues != null) {
+            for (int i = 0; i < pendingIds.size(); i++) {
+                dispatch(moduleId, pendingIds.get(i), pendingValues.get(i), consumer);
+            }
+        }
+    }
+
+    private void readProcessData(JsonReader reader, @Nullable String moduleId, ValueConsumer consumer,
+            @Nullable List<String> pendingIds, @Nullable List<Double> pendingValues) throws IOException {
+        String id = null;
+        double value = Double.NaN;
+        boolean hasValue = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("id".equals(name)) {
+                id = reader.nextString();
+            } else if ("value".equals(name) && reader.peek() != JsonToken.NULL) {
+                value = reader.nextDouble();
+                hasValue = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id == null || !hasValue) {
+            return;
+        }
+        if (moduleId != null) {
+            dispatch(moduleId, id, value, consumer);
+        } else if (pendingIds != null && pendingValues != null) {
+            pendingIds.add(id);
+            pendingValues.add(value);
+        }
+    }
+
+    private void dispatch(String moduleId, String processdataId, double value, ValueConsumer consumer) {
+        ThirdGenerationChannelMappingToWebApi channel = getChannel(moduleId, processdataId);
+        if (channel != null) {
+            consumer.accept(channel, value);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.thirdgeneration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.binding.internal.kostal.inverter.RefreshTier;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * The {@link ThirdGenerationProcessDataSubscription} keeps track of the linked channels of one thing and provides the
+ * {@link ThirdGenerationProcessDataRequest} for them.
+ * If a link changes, only the part of the request for the module of the channel is built again.
+ * Each module belongs to a {@link RefreshTier}, a request contains only the modules of the tiers which are due.
+ *
+ * @author Örjan Backsell - Initial contribution
+ */
+@NonNullByDefault
+final class ThirdGenerationProcessDataSubscription {
+
+    /*
+     * All channels of the inverter by their channel id
+     */
+    private final Map<String, ThirdGenerationChannelMappingToWebApi> channelsById = new HashMap<>();
+    /*
+     * Linked channels by module id and process data id, the maps of the modules are not modified after creation
+     */
+    private final Map<String, Map<String, ThirdGenerationChannelMappingToWebApi>> linkedChannelsByModule = new LinkedHashMap<>();
+    /*
+     * The serialized part of the request for each module with linked channels
+     */
+    private final Map<String, String> moduleRequests = new HashMap<>();
+
+    /*
+     * Compiled requests by the refresh tiers they contain, cleared if a link changes
+     */
+    private final Map<Set<RefreshTier>, ThirdGenerationProcessDataRequest> requests = new HashMap<>();
+
+    /**
+     * Constructor of this class, initially no channel is linked
+     *
+     * @param channelList all channels of the inverter, grouped by module id
+     */
+    ThirdGenerationProcessDataSubscription(Map<String, List<ThirdGenerationChannelMappingToWebApi>> channelList) {
+        for (List<ThirdGenerationChannelMappingToWebApi> channels : channelList.values()) {
+            for (ThirdGenerationChannelMappingToWebApi channel : channels) {
+                channelsById.put(channel.channelUID, channel);
+            }
+        }
+    }
+
+    /**
+     * Assigns a module of the web api to its refresh tier
+     *
+     * @param moduleId module id (as defined by the web api)
+     * @return the refresh tier of the module
+     */
+    static RefreshTier getRefreshTier(String moduleId) {
+        if (moduleId.startsWith("scb:statistic")) {
+            return RefreshTier.STATISTICS;
+        }
+        if (moduleId.startsWith("scb:event")) {
+            return RefreshTier.EVENTS;
+        }
+        if ("devices:local:battery".equals(moduleId)) {
+            return RefreshTier.BATTERY;
+        }
+        return RefreshTier.LIVE;
+    }
+
+    /**
+     * @param tiers the refresh tiers which are due
+     * @return the request for the channels of the given tiers which are currently linked
+     */
+    synchronized ThirdGenerationProcessDataRequest getRequest(Set<RefreshTier> tiers) {
+        ThirdGenerationProcessDataRequest request = requests.get(tiers);
+        if (request == null) {
+            request = compile(tiers);
+            requests.put(new HashSet<>(tiers), request);
+        }
+        return request;
+    }
+
+    /**
+     * Sets the linked state of all channels at once
+     *
+     * @param isLinked tells if the channel with the given id is linked
+     */
+    synchronized void setLinked(Predicate<String> isLinked) {
+        linkedChannelsByModule.clear();
+        moduleRequests.clear();
+        Map<String, List<ThirdGenerationChannelMappingToWebApi>> linkedChannels = new LinkedHashMap<>();
+        for (ThirdGenerationChannelMappingToWebApi channel : channelsById.values()) {
+            if (isLinked.test(channel.channelUID)) {
+                linkedChannels.computeIfAbsent(channel.moduleId, k -> new ArrayList<>()).add(channel);
+            }
+        }
+        for (Entry<String, List<ThirdGenerationChannelMappingToWebApi>> module : linkedChannels.entrySet()) {
+            Map<String, ThirdGenerationChannelMappingToWebApi> channels = new LinkedHashMap<>();
+            for (ThirdGenerationChannelMappingToWebApi channel : module.getValue()) {
+                channels.putIfAbsent(channel.processdataId, channel);
+            }
+            updateModule(module.getKey(), channels);
+        }
+        requests.clear();
+    }
+
+    /**
+     * Adds a channel to the request
+     *
+     * @param channelId id of the linked channel
+     * @return true if the request has changed
+     */
+    synchronized boolean link(String channelId) {
+        ThirdGenerationChannelMappingToWebApi channel = channelsById.get(channelId);
+        if (channel == null) {
+            return false;
+        }
+        Map<String, ThirdGenerationChannelMappingToWebApi> channels = linkedChannelsByModule.get(channel.moduleId);
+        if (channels != null && channels.containsKey(channel.processdataId)) {
+            return false;
+        }
+        Map<String, ThirdGenerationChannelMappingToWebApi> newChannels = channels == null ? new LinkedHashMap<>()
+                : new LinkedHashMap<>(channels);
+        newChannels.put(channel.processdataId, channel);
+        updateModule(channel.moduleId, newChannels);
+        requests.clear();
+        return true;
+    }
+
+    /**
+     * Removes a channel from the request
+     *
+     * @param channelId id of the unlinked channel
+     * @return true if the request has changed
+     */
+    synchronized boolean unlink(String channelId) {
+        ThirdGenerationChannelMappingToWebApi channel = channelsById.get(channelId);
+        if (channel == null) {
+            return false;
+        }
+        Map<String, ThirdGenerationChannelMappingToWebApi> channels = linkedChannelsByModule.get(channel.moduleId);
+        if (channels == null || channels.get(channel.processdataId) != channel) {
+            return false;
+        }
+        Map<String, ThirdGenerationChannelMappingToWebApi> newChannels = new LinkedHashMap<>(channels);
+        newChannels.remove(channel.processdataId);
+        updateModule(channel.moduleId, newChannels);
+        requests.clear();
+        return true;
+    }
+
+    private void updateModule(String moduleId, Map<String, ThirdGenerationChannelMappingToWebApi> channels) {
+        if (channels.isEmpty()) {
+            linkedChannelsByModule.remove(moduleId);
+            moduleRequests.remove(moduleId);
+            return;
+        }
+        JsonObject moduleJsonObject = new JsonObject();
+        moduleJsonObject.addProperty("moduleid", moduleId);
+        JsonArray processdataNames = new JsonArray();
+        for (String processdataId : channels.keySet()) {
+            processdataNames.add(processdataId);
+        }
+        moduleJsonObject.add("processdataids", processdataNames);
+
+        linkedChannelsByModule.put(moduleId, Collections.unmodifiableMap(channels));
+        moduleRequests.put(moduleId, moduleJsonObject.toString());
+    }
+
+    private ThirdGenerationProcessDataRequest compile(Set<RefreshTier> tiers) {
+        // Build the message to send to the inverter from the parts of the modules
+        StringBuilder body = new StringBuilder("[");
+        Map<String, Map<String, ThirdGenerationChannelMappingToWebApi>> channelsByModule = new HashMap<>();
+        for (Entry<String, Map<String, ThirdGenerationChannelMappingToWebApi>> module : linkedChannelsByModule
+                .entrySet()) {
+            if (!tiers.contains(getRefreshTier(module.getKey()))) {
+                continue;
+            }
+            if (body.length() > 1) {
+                body.append(',');
+            }
+            body.append(moduleRequests.get(module.getKey()));
+            channelsByModule.put(module.getKey(), module.getValue());
+        }
+        body.append(']');
+        return new ThirdGenerationProcessDataRequest(body.toString().getBytes(StandardCharsets.UTF_8),
+                Collections.unmodifiableMap(channelsByModule));
+    }
+}
@@ -0,0 +1,456 @@
+/**
+ * Copyright (c) 2010-2019 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.binding.internal.kostal.inverter.thirdgeneration;
+
+import static org.openhab.binding.internal.kostal.inverter.thirdgeneration.ThirdGenerationBindingConstants.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonObject;
+
+/**
+ * The {@link ThirdGenerationSessionManager} is responsible for the session of one device.
+ * It authenticates asynchronously, merges concurrent authentication attempts into one and renews a session in use
+ * in the background before the device drops it, an idle session is renewed by the next request. Sessions are kept
+ * in memory across a re-initialization of the handler.
+ *
+ * @author René Stakemeier - Initial contribution (authentication, as part of ThirdGenerationHandler.java)
+ * @author Örjan Backsell - Asynchronous authentication and session renewal
+ */
+@NonNullByDefault
+final class ThirdGenerationSessionManager {
+
+    /*
+     * operations used for authentication
+     */
+    private static final String AUTH_START = "/auth/start";
+    private static final String AUTH_FINISH = "/auth/finish";
+    private static final String AUTH_CREATE_SESSION = "/auth/create_session";
+
+    /*
+     * A session is renewed in the background once it reaches this age
+     */
+    static final long SESSION_RENEWAL_AGE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    /*
+     * The device drops sessions which have not been used for some minutes, an idle session is renewed when it is
+     * needed again. It is not renewed in the background, so that a thing polled rarely (e.g. at night) does not
+     * authenticate more often than it polls
+     */
+    static final long SESSION_IDLE_LIMIT_MILLIS = TimeUnit.MINUTES.toMillis(4);
+    /*
+     * Interval of the background check for sessions to renew
+     */
+    private static final long RENEWAL_CHECK_INTERVAL_SECONDS = 30;
+
+    /*
+     * Sessions of all things, kept across the re-initialization of a handler (key is the thing UID)
+     */
+    private static final Map<String, Session> SESSIONS = new ConcurrentHashMap<>();
+
+    private final Logger logger = LoggerFactory.getLogger(ThirdGenerationSessionManager.class);
+
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler;
+    private final String key;
+    private final String url;
+    private final String userPassword;
+    private final int configurationHash;
+    private final BooleanSupplier renewalAllowed;
+
+    private @Nullable CompletableFuture<String> pendingAuthentication;
+    private @Nullable ScheduledFuture<?> renewalJob;
+
+    /**
+     * Constructor of this class
+     *
+     * @param httpClient     the httpClient used for communication
+     * @param scheduler      the scheduler used for the cryptography and the background renewal
+     * @param key            unique key of the device, a session stored for this key is reused
+     * @param url            IP or hostname or the device
+     * @param userPassword   the password of the user
+     * @param renewalAllowed tells if the session may be renewed in the background, e.g. not while the device is
+     *                           unreachable
+     */
+    ThirdGenerationSessionManager(HttpClient httpClient, ScheduledExecutorService scheduler, String key, String url,
+            String userPassword, BooleanSupplier renewalAllowed) {
+        this.httpClient = httpClient;
+        this.scheduler = scheduler;
+        this.key = key;
+        this.url = url;
+        this.userPassword = userPassword;
+        this.configurationHash = Objects.hash(url, userPassword);
+        this.renewalAllowed = renewalAllowed;
+    }
+
+    /**
+     * Starts the background renewal of the session
+     */
+    synchronized void start() {
+        renewalJob = scheduler.scheduleWithFixedDelay(this::renewIfDue, RENEWAL_CHECK_INTERVAL_SECONDS,
+                RENEWAL_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the background renewal, the session itself is kept for the next start
+     */
+    synchronized void stop() {
+        ScheduledFuture<?> job = renewalJob;
+        if (job != null) {
+            job.cancel(true);
+            renewalJob = null;
+        }
+    }
+
+    /**
+     * Forgets the stored session of a device, e.g. if the thing has been removed
+     *
+     * @param key unique key of the device
+     */
+    static void forget(String key) {
+        SESSIONS.remove(key);
+    }
+
+    /**
+     * Provides the session id to sign requests with
+     *
+     * @return future completed with the current session id, or with a new one if an authentication was necessary
+     */
+    synchronized CompletableFuture<String> getSessionId() {
+        Session session = getValidSession();
+        if (session != null && System.currentTimeMillis() - session.lastUsed < SESSION_IDLE_LIMIT_MILLIS) {
+            session.lastUsed = System.currentTimeMillis();
+            return CompletableFuture.completedFuture(session.sessionId);
+        }
+        return authenticate();
+    }
+
+    /**
+     * Drops the session after the device has rejected it, the next request authenticates again
+     *
+     * @param sessionId the rejected session id
+     */
+    synchronized void invalidate(String sessionId) {
+        Session session = SESSIONS.get(key);
+        if (session != null && session.sessionId.equals(sessionId)) {
+            SESSIONS.remove(key, session);
+        }
+    }
+
+    /**
+     * Starts an authentication, or joins the one which is already running
+     *
+     * @return future completed with the new session id, or exceptionally with an {@link AuthenticationException}
+     */
+    synchronized CompletableFuture<String> authenticate() {
+        CompletableFuture<String> pending = pendingAuthentication;
+        if (pending != null) {
+            return pending;
+        }
+        CompletableFuture<String> authentication = startAuthentication();
+        pendingAuthentication = authentication;
+        authentication.whenComplete((sessionId, failure) -> authenticationCompleted(authentication, sessionId));
+        return authentication;
+    }
+
+    private synchronized void authenticationCompleted(CompletableFuture<String> authentication,
+            @Nullable String sessionId) {
+        if (pendingAuthentication == authentication) {
+            pendingAuthentication = null;
+        }
+        if (sessionId != null) {
+            SESSIONS.put(key, new Session(sessionId, configurationHash));
+        }
+    }
+
+    private synchronized @Nullable Session getValidSession() {
+        Session session = SESSIONS.get(key);
+        if (session == null || session.configurationHash != configurationHash) {
+            return null;
+        }
+        return session;
+    }
+
+    private void renewIfDue() {
+        if (!renewalAllowed.getAsBoolean()) {
+            // No handshake with a device which does not answer, the next request authenticates if necessary
+            return;
+        }
+        Session session = getValidSession();
+        long now = System.currentTimeMillis();
+        if (session != null && now - session.created >= SESSION_RENEWAL_AGE_MILLIS
+                && now - session.lastUsed < SESSION_IDLE_LIMIT_MILLIS) {
+            // The current session stays in use until the new one is available
+            logger.debug("Renewing session of {}", key);
+            authenticate().exceptionally(e -> {
+                logger.debug("Renewing the session of {} failed", key, e);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * This function is used to authenticate against the SCB.
+     * SCB uses PBKDF2 and AES256 GCM mode with a slightly modified authentication message.
+     * The authentication will fail on JRE < 8u162. since the security policy is set to "limited" by default (see readme
+     * for fix)
+     *
+     * The requests are sent asynchronously, the cryptography runs on the scheduler.
+     */
+    private CompletableFuture<String> startAuthentication() {
+        Handshake handshake = new Handshake();
+        // Create random numbers
+        handshake.clientNonce = ThirdGenerationEncryptionHelper.createClientNonce();
+        // Perform first step of authentication
+        JsonObject authMeJsonObject = new JsonObject();
+        authMeJsonObject.addProperty("username", USER_TYPE);
+        authMeJsonObject.addProperty("nonce", handshake.clientNonce);
+
+        return post(AUTH_START, authMeJsonObject)
+                .thenApplyAsync(response -> getAuthFinishMessage(handshake, response), scheduler)
+                .thenCompose(authFinishJsonObject -> post(AUTH_FINISH, authFinishJsonObject))
+                .thenApplyAsync(response -> getCreateSessionMessage(handshake, response), scheduler)
+                .thenCompose(createSessionJsonObject -> post(AUTH_CREATE_SESSION, createSessionJsonObject))
+                .thenApply(this::getSessionIdFromResponse);
+    }
+
+    private CompletableFuture<ContentResponse> post(String resource, JsonObject parameters) {
+        CompletableFuture<ContentResponse> response = ThirdGenerationHttpHelper.executeHttpPostAsync(httpClient, url,
+                resource, parameters, null);
+        return response.exceptionally(e -> {
+            throw new AuthenticationException(ThingStatusDetail.COMMUNICATION_ERROR, COMMUNICATION_ERROR_HTTP, e);
+        });
+    }
+
+    private JsonObject getAuthFinishMessage(Handshake handshake, ContentResponse authStartResponseContentResponse) {
+        // 200 is the desired status code
+        int statusCode = authStartResponseContentResponse.getStatus();
+        if (statusCode == 400) {
+            // Invalid user (which is hard coded and therefore can not be wrong until the api is changed by the
+            // manufacturer
+            throw new AuthenticationException(ThingStatusDetail.COMMUNICATION_ERROR, COMMUNICATION_ERROR_API_CHANGED);
+        }
+        if (statusCode == 403) {
+            // User is logged
+            // This can happen, if the user had to many bad attempts of entering the password in the web
+            // front end
+            throw new AuthenticationException(ThingStatusDetail.CONFIGURATION_ERROR,
+                    COMMUNICATION_ERROR_USER_ACCOUNT_LOCKED);
+        }
+        if (statusCode == 503) {
+            // internal communication error
+            // This can happen if the device is not ready yet for communication
+            throw new AuthenticationException(ThingStatusDetail.COMMUNICATION_ERROR, COMMUNICATION_ERROR_HTTP);
+        }
+        JsonObject authMeResponseJsonObject = getJsonObject(authStartResponseContentResponse);
+
+        // Extract information from the response
+        String salt = authMeResponseJsonObject.get("salt").getAsString();
+        String serverNonce = authMeResponseJsonObject.get("nonce").getAsString();
+        int rounds = authMeResponseJsonObject.get("rounds").getAsInt();
+        String transactionId = authMeResponseJsonObject.get("transactionId").getAsString();
+
+        // Do the cryptography stuff (magic happens here)
+        byte[] clientSignature;
+        try {
+            byte[] saltedPasswort = ThirdGenerationEncryptionHelper.getPBKDF2Hash(userPassword,
+                    Base64.getDecoder().decode(salt), rounds);
+            handshake.clientKey = ThirdGenerationEncryptionHelper.getHMACSha256(saltedPasswort, "Client Key");
+            byte[] serverKey = ThirdGenerationEncryptionHelper.getHMACSha256(saltedPasswort, "Server Key");
+            handshake.storedKey = ThirdGenerationEncryptionHelper.getSha256Hash(handshake.clientKey);
+            handshake.authMessage = String.format("n=%s,r=%s,r=%s,s=%s,i=%d,c=biws,r=%s", USER_TYPE,
+                    handshake.clientNonce, serverNonce, salt, rounds, serverNonce);
+            clientSignature = ThirdGenerationEncryptionHelper.getHMACSha256(handshake.storedKey,
+                    handshake.authMessage);
+            handshake.serverSignature = ThirdGenerationEncryptionHelper.getHMACSha256(serverKey,
+                    handshake.authMessage);
+        } catch (GeneralSecurityException | IllegalStateException e) {
+            throw new AuthenticationException(ThingStatusDetail.COMMUNICATION_ERROR,
+                    COMMUNICATION_ERROR_AUTHENTICATION, e);
+        }
+        handshake.transactionId = transactionId;
+        String clientProof = ThirdGenerationEncryptionHelper.createClientProof(clientSignature, handshake.clientKey);
+
+        // Perform step 2 of the authentication
+        JsonObject authFinishJsonObject = new JsonObject();
+        authFinishJsonObject.addProperty("transactionId", transactionId);
+        authFinishJsonObject.addProperty("proof", clientProof);
+        return authFinishJsonObject;
+    }
+
+    private JsonObject getCreateSessionMessage(Handshake handshake, ContentResponse authFinishResponseContentResponse) {
+        // 200 is the desired status code
+        if (authFinishResponseContentResponse.getStatus() == 400) {
+            // Authentication failed
+            throw new AuthenticationException(ThingStatusDetail.COMMUNICATION_ERROR, CONFIGURATION_ERROR_PASSWORD);
+        }
+        JsonObject authFinishResponseJsonObject = getJsonObject(authFinishResponseContentResponse);
+
+        // Extract information from the response
+        byte[] signature = Base64.getDecoder().decode(authFinishResponseJsonObject.get("signature").getAsString());
+        String token = authFinishResponseJsonObject.get("token").getAsString();
+
+        // Validate provided signature against calculated signature
+        if (!Arrays.equals(handshake.serverSignature, signature)) {
+            throw new AuthenticationException(ThingStatusDetail.COMMUNICATION_ERROR,
+                    COMMUNICATION_ERROR_AUTHENTICATION);
+        }
+
+        // Calculate protocol key
+        byte[] protocolKeyHMAC;
+        try {
+            protocolKeyHMAC = ThirdGenerationEncryptionHelper.getHMACSha256(handshake.storedKey,
+                    "Session Key".getBytes(), handshake.authMessage.getBytes(), handshake.clientKey);
+        } catch (GeneralSecurityException e) {
+            // Since the necessary libraries are provided, this should not happen
+            throw new AuthenticationException(ThingStatusDetail.CONFIGURATION_ERROR,
+                    COMMUNICATION_ERROR_AUTHENTICATION, e);
+        }
+
+        // AES GCM stuff
+        byte[] iv = new byte[16];
+        new SecureRandom().nextBytes(iv);
+
+        SecretKeySpec skeySpec = new SecretKeySpec(protocolKeyHMAC, "AES");
+        GCMParameterSpec param = new GCMParameterSpec(protocolKeyHMAC.length * 8 - AES_GCM_TAG_LENGTH, iv);
+
+        byte[] data;
+        try {
+            Cipher cipher = Cipher.getInstance("AES_256/GCM/NOPADDING");
+            cipher.init(Cipher.ENCRYPT_MODE, skeySpec, param);
+            data = cipher.doFinal(token.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            // The java installation does not support AES encryption in GCM mode
+            throw new AuthenticationException(ThingStatusDetail.COMMUNICATION_ERROR,
+                    COMMUNICATION_ERROR_AUTHENTICATION, e);
+        }
+
+        byte[] ciphertext = new byte[data.length - AES_GCM_TAG_LENGTH / 8];
+        byte[] gcmTag = new byte[AES_GCM_TAG_LENGTH / 8];
+        System.arraycopy(data, 0, ciphertext, 0, data.length - AES_GCM_TAG_LENGTH / 8);
+        System.arraycopy(data, data.length - AES_GCM_TAG_LENGTH / 8, gcmTag, 0, AES_GCM_TAG_LENGTH / 8);
+
+        JsonObject createSessionJsonObject = new JsonObject();
+        createSessionJsonObject.addProperty("transactionId", handshake.transactionId);
+        createSessionJsonObject.addProperty("iv", Base64.getEncoder().encodeToString(iv));
+        createSessionJsonObject.addProperty("tag", Base64.getEncoder().encodeToString(gcmTag));
+        createSessionJsonObject.addProperty("payload", Base64.getEncoder().encodeToString(ciphertext));
+        return createSessionJsonObject;
+    }
+
+    private String getSessionIdFromResponse(ContentResponse createSessionResponseContentResponse) {
+        // 200 is the desired status code
+        if (createSessionResponseContentResponse.getStatus() == 400) {
+            // Authentication failed
+            throw new AuthenticationException(ThingStatusDetail.COMMUNICATION_ERROR, CONFIGURATION_ERROR_PASSWORD);
+        }
+        return getJsonObject(createSessionResponseContentResponse).get("sessionId").getAsString();
+    }
+
+    private static JsonObject getJsonObject(ContentResponse response) {
+        try {
+            return ThirdGenerationHttpHelper.getJsonObjectFromResponse(response);
+        } catch (RuntimeException e) {
+            // No JSON answer received
+            throw new AuthenticationException(ThingStatusDetail.COMMUNICATION_ERROR, COMMUNICATION_ERROR_JSON, e);
+        }
+    }
+
+    /**
+     * Returns the {@link AuthenticationException} behind the failure of a future
+     *
+     * @param failure failure of a future returned by this class
+     * @return the authentication exception or null if the failure has another cause
+     */
+    static @Nullable AuthenticationException getAuthenticationException(Throwable failure) {
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof AuthenticationException ? (AuthenticationException) cause : null;
+    }
+
+    /**
+     * A session created by the device
+     */
+    private static final class Session {
+        final String sessionId;
+        final int configurationHash;
+        final long created = System.currentTimeMillis();
+        volatile long lastUsed = created;
+
+        Session(String sessionId, int configurationHash) {
+            this.sessionId = sessionId;
+            this.configurationHash = configurationHash;
+        }
+    }
+
+    /**
+     * Values of a running authentication, which are needed by later steps
+     */
+    private static final class Handshake {
+        String clientNonce = "";
+        String transactionId = "";
+        String authMessage = "";
+        byte[] clientKey = new byte[0];
+        byte[] storedKey = new byte[0];
+        byte[] serverSignature = new byte[0];
+    }
+
+    /**
+     * Signals a failed authentication, it carries the status which is shown for the thing
+     */
+    static final class AuthenticationException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        final ThingStatusDetail statusDetail;
+        final String description;
+
+        AuthenticationException(ThingStatusDetail statusDetail, String description) {
+            super(description);
+            this.statusDetail = statusDetail;
+            this.description = description;
+        }
+
+        AuthenticationException(ThingStatusDetail statusDetail, String description, Throwable cause) {
+            super(description, cause);
+            this.statusDetail = statusDetail;
+            this.description = description;
+        }
+    }
+}